@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+
+/**
+ * Executor for blocking resource methods (such as synchronous outbound calls or reading a streamed request entity).
+ * Resource methods that block suspend their response and hand their body over through
+ * {@link #dispatch(AsyncResponse, Callable)}. In {@code virtual} mode, {@link Main} also has the server run every
+ * other resource method on a virtual thread of its own, in place of the server thread pool.
+ * <p>
+ * Two modes are supported through {@code app.execution.mode}:
+ * <ul>
+ *     <li>{@code platform} - a bounded pool of platform threads with a bounded queue ({@code platform-threads},
+ *     {@code queue-size}), the default</li>
+ *     <li>{@code virtual} - a new virtual thread per task; requires a JVM with virtual thread support,
+ *     falls back to {@code platform} otherwise</li>
+ * </ul>
+ * With {@code app.execution.adaptive.enabled}, the platform pool grows (up to {@code adaptive.max-threads}) while
+ * the average queueing delay exceeds {@code adaptive.target-queue-millis}, and shrinks back to
+ * {@code platform-threads} once tasks no longer queue.
+ * <p>
+ * Virtual threads pinned to their carrier (while blocking in a {@code synchronized} block or a native frame) are
+ * reported by {@link JvmTelemetry}.
+ */
+@ApplicationScoped
+public class BlockingExecutor {
+    private static final Logger LOGGER = Logger.getLogger(BlockingExecutor.class.getName());
+
+    static final String MODE_PLATFORM = "platform";
+    static final String MODE_VIRTUAL = "virtual";
+
+    private static final ScheduledExecutorService RESIZER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "blocking-resize");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger active = new AtomicInteger();
+    // queueing delay since the last resize
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final ExecutorService executor;
+    private final String mode;
+    private final Counter submitted;
+    private final Timer queueTimer;
+    private final ScheduledFuture<?> resizing;
+
+    /**
+     * Create a new blocking executor.
+     *
+     * @param mode execution mode, {@code platform} or {@code virtual}
+     * @param threads number of threads in {@code platform} mode
+     * @param queueSize number of tasks waiting for a thread in {@code platform} mode, further tasks are rejected
+     * @param adaptive whether to resize the {@code platform} pool from the observed queueing delay
+     * @param maxThreads upper limit of the adaptive {@code platform} pool
+     * @param targetQueueMillis queueing delay above which the adaptive {@code platform} pool grows
+     * @param registry vendor metric registry
+     */
+    @Inject
+    public BlockingExecutor(@ConfigProperty(name = "app.execution.mode", defaultValue = MODE_PLATFORM) String mode,
+                            @ConfigProperty(name = "app.execution.platform-threads", defaultValue = "32") int threads,
+                            @ConfigProperty(name = "app.execution.queue-size", defaultValue = "1000") int queueSize,
+                            @ConfigProperty(name = "app.execution.adaptive.enabled", defaultValue = "false")
+                                    boolean adaptive,
+                            @ConfigProperty(name = "app.execution.adaptive.max-threads", defaultValue = "128")
+                                    int maxThreads,
+                            @ConfigProperty(name = "app.execution.adaptive.target-queue-millis", defaultValue = "5")
+                                    long targetQueueMillis,
+                            @RegistryType(type = MetricRegistry.Type.VENDOR) MetricRegistry registry) {
+        ExecutorService virtual = null;
+        if (MODE_VIRTUAL.equals(mode)) {
+            virtual = virtualExecutor();
+            if (null == virtual) {
+                LOGGER.warning("Virtual threads are not supported by this JVM, using platform threads");
+            } else {
+                LOGGER.info("Blocking resource methods run on virtual threads");
+            }
+        }
+        this.mode = (null == virtual) ? MODE_PLATFORM : MODE_VIRTUAL;
+        this.executor = (null == virtual) ? platformExecutor(threads, queueSize) : virtual;
+
+        this.submitted = registry.counter("execution.tasks.submitted");
+        this.queueTimer = registry.timer("execution.tasks.queue.timer");
+        register(registry, "execution.tasks.active", (Gauge<Integer>) active::get);
+        register(registry, "execution.virtual", (Gauge<Integer>) () -> MODE_VIRTUAL.equals(this.mode) ? 1 : 0);
+
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            register(registry, "execution.pool.size", (Gauge<Integer>) pool::getCorePoolSize);
+            register(registry, "execution.queue.size", (Gauge<Integer>) () -> pool.getQueue().size());
+            if (adaptive) {
+                int max = Math.max(threads, maxThreads);
+                long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetQueueMillis);
+                LOGGER.info("Blocking pool adapts between " + threads + " and " + max + " threads");
+                this.resizing = RESIZER.scheduleWithFixedDelay(() -> resize(pool, threads, max, targetNanos),
+                                                               1,
+                                                               1,
+                                                               TimeUnit.SECONDS);
+                return;
+            }
+        }
+        this.resizing = null;
+    }
+
+    /**
+     * Run a blocking task on this executor.
+     *
+     * @param task blocking work to execute
+     * @return future that can be used to cancel (interrupt) the task
+     * @throws RejectedExecutionException if the queue is full
+     */
+    Future<?> submit(Runnable task) {
+        submitted.inc();
+        long queuedAt = System.nanoTime();
+        return executor.submit(() -> {
+            long queued = System.nanoTime() - queuedAt;
+            queueTimer.update(queued, TimeUnit.NANOSECONDS);
+            queueNanos.add(queued);
+            dequeued.increment();
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Run the body of a blocking resource method on this executor and resume its response with the result.
+     * The response is resumed with {@code 503} if the queue is full.
+     *
+     * @param response suspended response of the resource method
+     * @param body blocking work producing the response entity (or a {@link Response})
+     */
+    void dispatch(AsyncResponse response, Callable<?> body) {
+        try {
+            submit(() -> {
+                try {
+                    response.resume(body.call());
+                } catch (Throwable throwable) {
+                    response.resume(throwable);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+        }
+    }
+
+    String mode() {
+        return mode;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (null != resizing) {
+            resizing.cancel(false);
+        }
+        executor.shutdown();
+    }
+
+    private void resize(ThreadPoolExecutor pool, int minThreads, int maxThreads, long targetNanos) {
+        long total = queueNanos.sumThenReset();
+        long count = dequeued.sumThenReset();
+        long delay = (count == 0) ? 0 : total / count;
+        int size = pool.getCorePoolSize();
+
+        // the maximum must never drop below the core size, hence the order of the setters
+        if (delay > targetNanos && size < maxThreads) {
+            int grown = Math.min(maxThreads, size + Math.max(1, size / 4));
+            pool.setMaximumPoolSize(grown);
+            pool.setCorePoolSize(grown);
+        } else if (delay < targetNanos / 4 && active.get() < size / 2 && size > minThreads) {
+            int shrunk = Math.max(minThreads, size - Math.max(1, size / 8));
+            pool.setCorePoolSize(shrunk);
+            pool.setMaximumPoolSize(shrunk);
+        }
+    }
+
+    // another instance (such as one created by a test) takes over the gauges instead of failing on the duplicate
+    private static <T extends Metric> void register(MetricRegistry registry, String name, T metric) {
+        registry.remove(name);
+        registry.register(name, metric);
+    }
+
+    private static ExecutorService platformExecutor(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "blocking-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                             threads,
+                                                             60,
+                                                             TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(queueSize),
+                                                             factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // looked up reflectively, as virtual threads are not part of the Java 11 API the application is built against
+    static ExecutorService virtualExecutor() {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findStatic(Executors.class,
+                                "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) handle.invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+}
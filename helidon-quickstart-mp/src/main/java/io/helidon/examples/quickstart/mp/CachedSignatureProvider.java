@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.helidon.config.Config;
+import io.helidon.security.EndpointConfig;
+import io.helidon.security.OutboundSecurityResponse;
+import io.helidon.security.ProviderRequest;
+import io.helidon.security.SecurityEnvironment;
+import io.helidon.security.spi.OutboundSecurityProvider;
+import io.helidon.security.spi.SynchronousProvider;
+
+/**
+ * Outbound {@code http-signatures} with pooled {@code Mac} instances and cached signatures
+ * (see {@link HmacSignatures}).
+ * <p>
+ * Configured as the outbound part of the {@code http-signatures} provider, limited to {@code hmac-sha256} keys;
+ * each entry of {@code outbound} has the target {@code hosts} ({@code *} for any host) and the {@code signature}
+ * with {@code key-id}, {@code hmac.secret} and the {@code always} signed {@code sign-headers}.
+ */
+public final class CachedSignatureProvider extends SynchronousProvider implements OutboundSecurityProvider {
+    static final String CONFIG_KEY = "cached-http-signatures";
+
+    private final List<OutboundTarget> targets;
+
+    private CachedSignatureProvider(List<OutboundTarget> targets) {
+        this.targets = targets;
+    }
+
+    /**
+     * Create the provider from its configuration node.
+     *
+     * @param config provider configuration
+     * @return new provider
+     */
+    static CachedSignatureProvider create(Config config) {
+        List<OutboundTarget> targets = new ArrayList<>();
+        for (Config target : config.get("outbound").asNodeList().orElse(Collections.emptyList())) {
+            Config signature = target.get("signature");
+            List<String> signHeaders = signature.get("sign-headers").asNodeList()
+                    .orElse(Collections.emptyList())
+                    .stream()
+                    .findFirst()
+                    .flatMap(headers -> headers.get("always").asList(String.class).asOptional())
+                    .orElse(Collections.singletonList("date"));
+            targets.add(new OutboundTarget(target.get("hosts").asList(String.class).orElse(Collections.singletonList("*")),
+                                           signature.get("key-id").asString().get(),
+                                           signHeaders,
+                                           HmacSignatures.create(signature.get("hmac.secret").asString().get())));
+        }
+        return new CachedSignatureProvider(targets);
+    }
+
+    @Override
+    public boolean isOutboundSupported(ProviderRequest request, SecurityEnvironment env, EndpointConfig config) {
+        return null != target(env.targetUri());
+    }
+
+    @Override
+    protected OutboundSecurityResponse syncOutbound(ProviderRequest request,
+                                                    SecurityEnvironment env,
+                                                    EndpointConfig config) {
+        URI uri = env.targetUri();
+        OutboundTarget target = target(uri);
+        if (null == target) {
+            return OutboundSecurityResponse.abstain();
+        }
+
+        Map<String, List<String>> headers = env.headers();
+        Map<String, List<String>> added = new HashMap<>();
+        String existingDate = header(headers, "date");
+        String date = (null == existingDate) ? HmacSignatures.date() : existingDate;
+        if (null == existingDate) {
+            added.put("date", Collections.singletonList(date));
+        }
+        String existingHost = header(headers, "host");
+        String host = (null == existingHost) ? HmacSignatures.host(uri) : existingHost;
+        String requestTarget = HmacSignatures.requestTarget(env.method(), uri.getRawPath());
+
+        String signingString = HmacSignatures.signingString(target.signHeaders, name -> {
+            switch (name) {
+            case HmacSignatures.REQUEST_TARGET:
+                return requestTarget;
+            case "date":
+                return date;
+            case "host":
+                return host;
+            default:
+                return header(headers, name);
+            }
+        });
+        if (null == signingString) {
+            return OutboundSecurityResponse.abstain();
+        }
+
+        String signature = target.signatures.sign(signingString);
+        added.put("signature", Collections.singletonList(HmacSignatures.signatureHeader(target.keyId,
+                                                                                        target.signHeaders,
+                                                                                        signature)));
+        return OutboundSecurityResponse.withHeaders(added);
+    }
+
+    private OutboundTarget target(URI uri) {
+        if (null == uri) {
+            return null;
+        }
+        for (OutboundTarget target : targets) {
+            if (target.hosts.contains("*") || target.hosts.contains(uri.getHost())) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    private static final class OutboundTarget {
+        private final List<String> hosts;
+        private final String keyId;
+        private final List<String> signHeaders;
+        private final HmacSignatures signatures;
+
+        private OutboundTarget(List<String> hosts, String keyId, List<String> signHeaders, HmacSignatures signatures) {
+            this.hosts = hosts;
+            this.keyId = keyId;
+            this.signHeaders = signHeaders;
+            this.signatures = signatures;
+        }
+    }
+}
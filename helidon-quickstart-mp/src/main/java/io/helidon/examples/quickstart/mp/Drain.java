@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.eclipse.microprofile.metrics.annotation.RegistryType;
+
+/**
+ * Graceful drain on JVM shutdown ({@code SIGTERM}). Once draining, readiness reports {@code DOWN} and new requests
+ * are rejected with {@code 503} and {@code Connection: close} (see {@link DrainFilter}), until in-flight requests and
+ * outbound calls complete or the time budget expires. Called first by the shutdown hook of {@link Main}, before the
+ * server is stopped and the CDI container is closed.
+ * <p>
+ * Configured through {@code app.drain.*} properties:
+ * <ul>
+ *     <li>{@code enabled} - whether to drain on shutdown, defaults to {@code true}</li>
+ *     <li>{@code budget-seconds} - longest time to wait for in-flight work, defaults to {@code 20}</li>
+ * </ul>
+ * The drain duration and the number of abandoned requests are reported as vendor metrics.
+ */
+@Readiness
+@ApplicationScoped
+public class Drain implements HealthCheck {
+    private static final Logger LOGGER = Logger.getLogger(Drain.class.getName());
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final LongAdder inFlight = new LongAdder();
+    private final boolean enabled;
+    private final Duration budget;
+    private final OutboundPeers outboundPeers;
+    private final Timer duration;
+    private final Counter abandoned;
+
+    private volatile boolean draining;
+
+    /**
+     * Create a new drain.
+     *
+     * @param enabled whether to drain on shutdown
+     * @param budgetSeconds longest time to wait for in-flight work
+     * @param outboundPeers peers to wait for outbound calls to
+     * @param registry vendor metric registry
+     */
+    @Inject
+    public Drain(@ConfigProperty(name = "app.drain.enabled", defaultValue = "true") boolean enabled,
+                 @ConfigProperty(name = "app.drain.budget-seconds", defaultValue = "20") long budgetSeconds,
+                 OutboundPeers outboundPeers,
+                 @RegistryType(type = MetricRegistry.Type.VENDOR) MetricRegistry registry) {
+        this.enabled = enabled;
+        this.budget = Duration.ofSeconds(budgetSeconds);
+        this.outboundPeers = outboundPeers;
+
+        this.duration = registry.timer("drain.duration");
+        this.abandoned = registry.counter("drain.abandoned");
+        // another instance (such as one created by a test) takes over the gauge instead of failing on the duplicate
+        registry.remove("drain.in-flight");
+        registry.register("drain.in-flight", (Gauge<Long>) inFlight::sum);
+    }
+
+    /**
+     * Reject new requests and wait for the in-flight ones, if enabled.
+     */
+    void drain() {
+        if (!enabled) {
+            return;
+        }
+        draining = true;
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+        LOGGER.info("Draining " + inFlight.sum() + " requests, " + outboundPeers.outstanding() + " outbound calls");
+
+        while ((inFlight.sum() > 0 || outboundPeers.outstanding() > 0) && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long remaining = inFlight.sum();
+        duration.update(elapsed, TimeUnit.NANOSECONDS);
+        abandoned.inc(remaining);
+        LOGGER.info("Drained in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, " + remaining
+                            + " requests abandoned");
+    }
+
+    /**
+     * Track a new request.
+     *
+     * @return {@code false} if draining, the request must be rejected and not {@link #exit() exited}
+     */
+    boolean enter() {
+        // counted before the check, so a request either sees the drain or is waited for
+        inFlight.increment();
+        if (draining) {
+            inFlight.decrement();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A tracked request completed.
+     */
+    void exit() {
+        inFlight.decrement();
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("drain")
+                .state(!draining)
+                .withData("inFlight", inFlight.sum())
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Tracks in-flight requests for the {@link Drain}, and rejects new ones with {@code 503} while draining.
+ * Suspended (asynchronous) requests are tracked until their response is resumed.
+ */
+@Provider
+@PreMatching
+@ApplicationScoped
+public class DrainFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String TRACKED_PROPERTY = DrainFilter.class.getName() + ".tracked";
+
+    private final Drain drain;
+
+    /**
+     * Create a new filter.
+     *
+     * @param drain drain to track requests with
+     */
+    @Inject
+    public DrainFilter(Drain drain) {
+        this.drain = drain;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (drain.enter()) {
+            requestContext.setProperty(TRACKED_PROPERTY, Boolean.TRUE);
+        } else {
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                                             .header("Connection", "close")
+                                             .build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (null != requestContext.getProperty(TRACKED_PROPERTY)) {
+            requestContext.removeProperty(TRACKED_PROPERTY);
+            drain.exit();
+        }
+    }
+}
@@ -33,6 +33,9 @@ public class GreetApplication extends Application {
 
     @Override
     public Set<Class<?>> getClasses() {
-        return CollectionsHelper.setOf(GreetResource.class);
+        return CollectionsHelper.setOf(GreetResource.class,
+                                       ProfilingResource.class,
+                                       RouteEventFilter.class,
+                                       DrainFilter.class);
     }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary framing for internal greeting calls between the SE and MP services.
+ * <p>
+ * A body is a sequence of frames, each a UTF-8 string prefixed with its length in bytes as an unsigned
+ * variable-length integer (7 bits per byte, least significant group first, high bit set on all but the last byte).
+ * A request body carries one frame per name to greet (an empty frame greets the world); the response body carries
+ * one frame per greeting message, in the same order, so several names can be greeted in a single request.
+ * Outbound calls send a single frame per request; requests are not pipelined, each waits for its response
+ * before its connection is reused.
+ */
+final class GreetFrames {
+    /**
+     * Media type of framed bodies.
+     */
+    static final String MEDIA_TYPE = "application/x-greet-frames";
+    /**
+     * Longest accepted frame in bytes.
+     */
+    static final int MAX_FRAME_LENGTH = 16 * 1024;
+
+    private GreetFrames() {
+    }
+
+    /**
+     * Encode strings as frames.
+     *
+     * @param values strings to encode
+     * @return framed bytes
+     */
+    static byte[] encode(String... values) {
+        Encoder encoder = new Encoder();
+        for (String value : values) {
+            encoder.add(value);
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Decode a complete framed body.
+     *
+     * @param body framed bytes
+     * @return decoded strings
+     * @throws FrameException if the body is not a valid sequence of frames
+     */
+    static List<String> decode(byte[] body) {
+        List<String> values = new ArrayList<>();
+        Decoder decoder = new Decoder();
+        decoder.feed(ByteBuffer.wrap(body), values::add);
+        decoder.finish();
+        return values;
+    }
+
+    /**
+     * Number of bytes of a string encoded as UTF-8, computed without encoding it.
+     *
+     * @param value string to measure
+     * @return length in bytes
+     */
+    static int utf8Length(CharSequence value) {
+        int bytes = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?'
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Accumulates frames into a single buffer.
+     */
+    static final class Encoder {
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        /**
+         * Append a frame.
+         *
+         * @param value string to encode
+         */
+        void add(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(5 + bytes.length);
+            int size = bytes.length;
+            while ((size & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((size & 0x7F) | 0x80);
+                size >>>= 7;
+            }
+            buffer[length++] = (byte) size;
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+            }
+        }
+    }
+
+    /**
+     * Incremental decoder. Bytes can be fed in chunks of any size; frames may span chunks.
+     */
+    static final class Decoder {
+        private int frameLength;
+        private int shift;
+        // null while reading the length prefix
+        private byte[] frame;
+        private int position;
+        private int count;
+
+        /**
+         * Process the next chunk.
+         *
+         * @param chunk bytes to process
+         * @param frames consumer of the decoded frames
+         * @throws FrameException if a frame is too long
+         */
+        void feed(ByteBuffer chunk, Consumer<String> frames) {
+            while (chunk.hasRemaining()) {
+                if (null == frame) {
+                    int b = chunk.get() & 0xFF;
+                    frameLength |= (b & 0x7F) << shift;
+                    shift += 7;
+                    if (frameLength > MAX_FRAME_LENGTH || (shift > 21 && (b & 0x80) != 0)) {
+                        throw new FrameException(count + 1, "Frame too long");
+                    }
+                    if ((b & 0x80) == 0) {
+                        frame = new byte[frameLength];
+                        position = 0;
+                    }
+                }
+                if (null != frame) {
+                    int read = Math.min(chunk.remaining(), frame.length - position);
+                    chunk.get(frame, position, read);
+                    position += read;
+                    if (position == frame.length) {
+                        count++;
+                        frames.accept(new String(frame, StandardCharsets.UTF_8));
+                        frame = null;
+                        frameLength = 0;
+                        shift = 0;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Verify the stream did not end in the middle of a frame.
+         *
+         * @return number of decoded frames
+         * @throws FrameException if the last frame is incomplete
+         */
+        int finish() {
+            if (null != frame || shift > 0) {
+                throw new FrameException(count + 1, "Incomplete frame");
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Invalid frame in a framed body.
+     */
+    static final class FrameException extends RuntimeException {
+        private final int frame;
+
+        FrameException(int frame, String message) {
+            super(message);
+            this.frame = frame;
+        }
+
+        int frame() {
+            return frame;
+        }
+    }
+}
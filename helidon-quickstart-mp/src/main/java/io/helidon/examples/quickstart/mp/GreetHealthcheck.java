@@ -19,7 +19,7 @@ public class GreetHealthcheck implements HealthCheck {
 
     @Override
     public HealthCheckResponse call() {
-        String message = provider.getMessage();
+        String message = provider.getMessage().source();
         return HealthCheckResponse.named("greeting")
                 .state("Hello".equals(message))
                 .withData("greeting", message)
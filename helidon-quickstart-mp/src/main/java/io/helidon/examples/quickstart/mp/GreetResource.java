@@ -16,7 +16,14 @@
 
 package io.helidon.examples.quickstart.mp;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.annotation.security.RolesAllowed;
 import javax.enterprise.context.RequestScoped;
@@ -26,12 +33,18 @@ import javax.json.JsonBuilderFactory;
 import javax.json.JsonObject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -39,9 +52,9 @@ import io.helidon.security.SecurityContext;
 import io.helidon.security.annotations.Authenticated;
 import io.helidon.security.integration.jersey.ClientSecurityFeature;
 
-import org.eclipse.microprofile.metrics.annotation.Counted;
-import org.eclipse.microprofile.metrics.annotation.Timed;
-import org.glassfish.jersey.server.Uri;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
 
 /**
  * A simple JAX-RS resource to greet you. Examples:
@@ -55,6 +68,18 @@ import org.glassfish.jersey.server.Uri;
  * Change greeting
  * curl -X PUT -H "Content-Type: application/json" -d '{"greeting" : "Howdy"}' http://localhost:8080/greet/greeting
  *
+ * Change greeting for a locale, used for clients preferring it (or a more specific one) in Accept-Language
+ * curl -X PUT -H "Content-Type: application/json" -d '{"locale" : "de", "greeting" : "Hallo"}' http://localhost:8080/greet/greeting
+ *
+ * Change greeting to a template (see {@link GreetingTemplate})
+ * curl -X PUT -H "Content-Type: application/json" -d '{"greeting" : "Hi {name}, it is {time}"}' http://localhost:8080/greet/greeting
+ *
+ * Import per-name or per-locale greetings (one JSON object per line)
+ * curl -X PUT -H "Content-Type: application/x-ndjson" --data-binary @greetings.ndjson http://localhost:8080/greet/greeting/bulk
+ *
+ * Get greeting messages for several names in one call, using the internal binary framing (see {@link GreetFrames})
+ * printf '\x03Joe\x04Jose' | curl -X POST -H "Content-Type: application/x-greet-frames" --data-binary @- http://localhost:8080/greet/frames
+ *
  * The message is returned as a JSON object.
  */
 @Path("/greet")
@@ -62,52 +87,91 @@ import org.glassfish.jersey.server.Uri;
 public class GreetResource {
 
     private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
+    private static final String NDJSON = "application/x-ndjson";
+    // names of the metrics previously registered through @Timed and @Counted(name = "counter")
+    private static final String TIMER_NAME = GreetResource.class.getName() + ".getDefaultMessage";
+    private static final String COUNTER_NAME = GreetResource.class.getName() + ".counter";
 
     /**
      * The greeting message provider.
      */
     private final GreetingProvider greetingProvider;
 
-    @Uri("http://localhost:8080/greet")
-    private WebTarget target;
+    /**
+     * Load balanced (and possibly hedged) outbound peers.
+     */
+    private final OutboundPeers outboundPeers;
+
+    /**
+     * Executor for the resource methods that block reading their request entity.
+     */
+    private final BlockingExecutor blockingExecutor;
+
+    /**
+     * Application metrics of the default message.
+     */
+    private final Timer defaultMessageTimer;
+    private final Counter defaultMessageCounter;
 
     /**
      * Using constructor injection to get a configuration property.
      * By default this gets the value from META-INF/microprofile-config
      *
      * @param greetingConfig the configured greeting message
+     * @param outboundPeers peers to call on outbound requests
+     * @param blockingExecutor executor for blocking resource methods
+     * @param registry application metric registry
      */
     @Inject
-    public GreetResource(GreetingProvider greetingConfig) {
+    public GreetResource(GreetingProvider greetingConfig,
+                         OutboundPeers outboundPeers,
+                         BlockingExecutor blockingExecutor,
+                         MetricRegistry registry) {
         this.greetingProvider = greetingConfig;
+        this.outboundPeers = outboundPeers;
+        this.blockingExecutor = blockingExecutor;
+        this.defaultMessageTimer = registry.timer(TIMER_NAME);
+        this.defaultMessageCounter = registry.counter(COUNTER_NAME);
     }
 
     /**
      * Return a wordly greeting message.
      *
+     * @param acceptLanguage preferred languages of the client
+     * @param headers request headers, available to greeting templates
      * @return {@link JsonObject}
      */
     @SuppressWarnings("checkstyle:designforextension")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    @Timed
-    @Counted(name = "counter")
-    public JsonObject getDefaultMessage() {
-        return createResponse("World");
+    public JsonObject getDefaultMessage(@HeaderParam("Accept-Language") String acceptLanguage,
+                                        @Context HttpHeaders headers) {
+        // warm-up requests are not timed nor counted, so they do not skew the application metrics
+        if (WarmUp.isWarmUp(headers.getHeaderString(WarmUp.HEADER))) {
+            return createResponse(greetingProvider.getMessage("World", acceptLanguage), "World", headers);
+        }
+        defaultMessageCounter.inc();
+        try (Timer.Context ignored = defaultMessageTimer.time()) {
+            return createResponse(greetingProvider.getMessage("World", acceptLanguage), "World", headers);
+        }
     }
 
     /**
      * Return a greeting message using the name that was provided.
      *
      * @param name the name to greet
+     * @param acceptLanguage preferred languages of the client
+     * @param headers request headers, available to greeting templates
      * @return {@link JsonObject}
      */
     @SuppressWarnings("checkstyle:designforextension")
     @Path("/{name}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public JsonObject getMessage(@PathParam("name") String name) {
-        return createResponse(name);
+    public JsonObject getMessage(@PathParam("name") String name,
+                                 @HeaderParam("Accept-Language") String acceptLanguage,
+                                 @Context HttpHeaders headers) {
+        return createResponse(greetingProvider.getMessage(name, acceptLanguage), name, headers);
     }
 
     @GET
@@ -115,12 +179,50 @@ public class GreetResource {
     //@Fallback(fallbackMethod = "outboundFailed")
     @RolesAllowed({"user", "admin"})
     @Authenticated
-    public JsonObject outbound(@Context SecurityContext context) {
-        return target.path(context.userName())
-                .request()
+    @Produces(MediaType.APPLICATION_JSON)
+    public void outbound(@Context SecurityContext context, @Suspended AsyncResponse response) {
+        // the outbound call blocks, so it runs on the configured blocking executor
+        String userName = context.userName();
+        CompletionStage<?> reply;
+        if (outboundPeers.binary()) {
+            reply = outboundPeers.call(target -> postFrames(target, context, userName), body -> body.length)
+                    .thenApply(body -> JSON.createObjectBuilder()
+                            .add("message", singleFrame(body))
+                            .build());
+        } else {
+            // the JSON body of the peer is passed on as is
+            reply = outboundPeers.call(target -> target.path(userName)
+                                               .request()
+                                               .property(ClientSecurityFeature.PROPERTY_CONTEXT, context)
+                                               .accept(MediaType.APPLICATION_JSON_TYPE)
+                                               .get(String.class),
+                                       GreetFrames::utf8Length);
+        }
+        // a response that is never resumed still completes (with 503), so the drain count is released
+        response.setTimeout(outboundPeers.callTimeoutMillis(), TimeUnit.MILLISECONDS);
+        reply.whenComplete((entity, throwable) -> {
+            if (null == throwable) {
+                response.resume(entity);
+            } else {
+                response.resume(throwable);
+            }
+        });
+    }
+
+    // one frame per POST, concurrent calls are not pipelined over a shared framed stream
+    private static byte[] postFrames(WebTarget target, SecurityContext context, String name) {
+        return target.path("frames")
+                .request(GreetFrames.MEDIA_TYPE)
                 .property(ClientSecurityFeature.PROPERTY_CONTEXT, context)
-                .accept(MediaType.APPLICATION_JSON_TYPE)
-                .get(JsonObject.class);
+                .post(Entity.entity(GreetFrames.encode(name), GreetFrames.MEDIA_TYPE), byte[].class);
+    }
+
+    private static String singleFrame(byte[] body) {
+        List<String> messages = GreetFrames.decode(body);
+        if (messages.size() != 1) {
+            throw new IllegalStateException("Expected a single frame, got " + messages.size());
+        }
+        return messages.get(0);
     }
 
     public JsonObject outboundFailed(SecurityContext context) {
@@ -130,9 +232,9 @@ public class GreetResource {
     }
 
     /**
-     * Set the greeting to use in future messages.
+     * Set the greeting to use in future messages, or with a {@code locale}, the greeting for that locale.
      *
-     * @param jsonObject JSON containing the new greeting
+     * @param jsonObject JSON containing the new greeting and optionally its locale
      * @return {@link Response}
      */
     @SuppressWarnings("checkstyle:designforextension")
@@ -150,16 +252,144 @@ public class GreetResource {
         }
 
         String newGreeting = jsonObject.getString("greeting");
+        String locale = jsonObject.getString("locale", null);
+        if (null != locale && locale.trim().isEmpty()) {
+            JsonObject entity = JSON.createObjectBuilder()
+                    .add("error", "Invalid locale")
+                    .build();
+            return Response.status(Response.Status.BAD_REQUEST).entity(entity).build();
+        }
 
-        greetingProvider.setMessage(newGreeting);
+        GreetingUpdateEvent event = new GreetingUpdateEvent();
+        event.begin();
+        if (null == locale) {
+            greetingProvider.setMessage(newGreeting);
+        } else {
+            greetingProvider.overrides().putLocale(locale, newGreeting);
+        }
+        if (event.shouldCommit()) {
+            event.source = (null == locale) ? "put" : "put-locale";
+            event.entries = 1;
+            event.payloadSize = GreetFrames.utf8Length(newGreeting);
+            event.commit();
+        }
         return Response.status(Response.Status.NO_CONTENT).build();
     }
 
-    private JsonObject createResponse(String who) {
-        String msg = String.format("%s %s!", greetingProvider.getMessage(), who);
+    /**
+     * Import per-name and per-locale greetings from an NDJSON body.
+     * The body is read and parsed in small chunks, so it is never buffered whole.
+     *
+     * @param ndjson NDJSON stream, one greeting per line
+     * @param response suspended response, resumed with the number of imported greetings
+     */
+    @SuppressWarnings("checkstyle:designforextension")
+    @Path("/greeting/bulk")
+    @PUT
+    @Consumes(NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void importGreetings(InputStream ndjson, @Suspended AsyncResponse response) {
+        // reading the entity stream blocks, so it is read on the blocking executor rather than a request thread
+        blockingExecutor.dispatch(response, () -> readGreetings(ndjson));
+    }
 
-        return JSON.createObjectBuilder()
+    private Response readGreetings(InputStream ndjson) throws IOException {
+        GreetingUpdateEvent event = new GreetingUpdateEvent();
+        event.begin();
+        GreetingOverrides.Import greetingImport = greetingProvider.overrides().startImport();
+        byte[] buffer = new byte[8192];
+        long bytes = 0;
+        int count;
+        try {
+            int read;
+            while ((read = ndjson.read(buffer)) > 0) {
+                bytes += read;
+                greetingImport.feed(ByteBuffer.wrap(buffer, 0, read));
+            }
+            count = greetingImport.commit();
+        } catch (GreetingOverrides.ImportException e) {
+            JsonObject entity = JSON.createObjectBuilder()
+                    .add("error", e.getMessage())
+                    .add("line", e.line())
+                    .build();
+            return Response.status(Response.Status.BAD_REQUEST).entity(entity).build();
+        }
+        if (event.shouldCommit()) {
+            event.source = "bulk";
+            event.entries = count;
+            event.payloadSize = bytes;
+            event.commit();
+        }
+
+        return Response.ok(JSON.createObjectBuilder()
+                                   .add("imported", count)
+                                   .build())
+                .build();
+    }
+
+    /**
+     * Greet each name in a framed request body, responding with a framed body of the greeting messages.
+     * An empty name greets the world with the default greeting.
+     *
+     * @param frames framed request body, see {@link GreetFrames}
+     * @param acceptLanguage preferred languages of the client
+     * @param headers request headers, available to greeting templates
+     * @param response suspended response, resumed with the framed greeting messages
+     */
+    @SuppressWarnings("checkstyle:designforextension")
+    @Path("/frames")
+    @POST
+    @Consumes(GreetFrames.MEDIA_TYPE)
+    @Produces(GreetFrames.MEDIA_TYPE)
+    public void greetFrames(InputStream frames,
+                            @HeaderParam("Accept-Language") String acceptLanguage,
+                            @Context HttpHeaders headers,
+                            @Suspended AsyncResponse response) {
+        // reading the entity stream blocks, so it is read on the blocking executor rather than a request thread
+        blockingExecutor.dispatch(response, () -> readFrames(frames, acceptLanguage, headers));
+    }
+
+    private Response readFrames(InputStream frames, String acceptLanguage, HttpHeaders headers) throws IOException {
+        GreetFrames.Decoder decoder = new GreetFrames.Decoder();
+        GreetFrames.Encoder encoder = new GreetFrames.Encoder();
+        // an empty name asks for the default greeting
+        Consumer<String> greet = name -> {
+            String greeted = name.isEmpty() ? "World" : name;
+            encoder.add(greetingProvider.getMessage(greeted, acceptLanguage).render(greeted, headers::getHeaderString));
+        };
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = frames.read(buffer)) > 0) {
+                decoder.feed(ByteBuffer.wrap(buffer, 0, read), greet);
+            }
+            decoder.finish();
+        } catch (GreetFrames.FrameException e) {
+            JsonObject entity = JSON.createObjectBuilder()
+                    .add("error", e.getMessage())
+                    .add("frame", e.frame())
+                    .build();
+            return Response.status(Response.Status.BAD_REQUEST).entity(entity).type(MediaType.APPLICATION_JSON).build();
+        }
+
+        return Response.ok(encoder.toByteArray()).build();
+    }
+
+    private JsonObject createResponse(GreetingTemplate template, String who, HttpHeaders headers) {
+        ResponseEvent event = new ResponseEvent();
+        event.begin();
+
+        String msg = template.render(who, headers::getHeaderString);
+
+        JsonObject returnObject = JSON.createObjectBuilder()
                 .add("message", msg)
                 .build();
+
+        if (event.shouldCommit()) {
+            event.name = who;
+            event.payloadSize = GreetFrames.utf8Length(msg);
+            event.commit();
+        }
+        return returnObject;
     }
 }
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+
+/**
+ * Per-name and per-locale greeting overrides.
+ * <p>
+ * Reads go to immutable open-addressing tables, one per shard, published through an atomic array, so lookups
+ * never lock. Writes come in bulk through {@link Import}, which collects entries from an NDJSON stream
+ * and publishes merged tables once the stream completes, or one locale at a time through
+ * {@link #putLocale(String, String)}; either way only the shards of the written keys are copied.
+ * Greetings are stored as compiled {@link GreetingTemplate}s.
+ * <p>
+ * Locales are looked up along the fallback chain of an {@code Accept-Language} header (languages by quality,
+ * each followed by its less specific tags, such as {@code de-at, de, en}). Chains are computed once per
+ * distinct header value, ignoring whitespace and case, and only for as many ranges as fit the
+ * {@link #MAX_LANGUAGE_RANGES} and {@link #MAX_ACCEPT_LANGUAGE_LENGTH} limits.
+ */
+final class GreetingOverrides {
+    /**
+     * Longest accepted NDJSON line in bytes.
+     */
+    static final int MAX_LINE_LENGTH = 16 * 1024;
+    /**
+     * Most language ranges of an {@code Accept-Language} header taken into account.
+     */
+    static final int MAX_LANGUAGE_RANGES = 16;
+    /**
+     * Most characters of an {@code Accept-Language} header taken into account, whitespace excluded.
+     */
+    static final int MAX_ACCEPT_LANGUAGE_LENGTH = 256;
+
+    private static final JsonReaderFactory JSON = Json.createReaderFactory(Collections.emptyMap());
+    // header values repeat a lot, but are client controlled, so the cache is simply dropped once full
+    private static final int CHAIN_CACHE_SIZE = 4096;
+    private static final Map<String, String[]> FALLBACK_CHAINS = new ConcurrentHashMap<>();
+
+    private final ShardedTable names = new ShardedTable();
+    private final ShardedTable locales = new ShardedTable();
+
+    /**
+     * Greeting override for a name.
+     *
+     * @param name name to greet
+     * @return greeting override or {@code null} if none is defined
+     */
+    GreetingTemplate forName(String name) {
+        return names.get(name);
+    }
+
+    /**
+     * Greeting override for a locale.
+     *
+     * @param locale language tag, such as {@code de} or {@code en-us}
+     * @return greeting override or {@code null} if none is defined
+     */
+    GreetingTemplate forLocale(String locale) {
+        return locales.get(normalizeLocale(locale));
+    }
+
+    /**
+     * Greeting override for the most preferred language of an {@code Accept-Language} header that has one.
+     *
+     * @param acceptLanguage value of the {@code Accept-Language} header
+     * @return greeting override or {@code null} if none is defined
+     */
+    GreetingTemplate forAcceptLanguage(String acceptLanguage) {
+        for (String locale : fallbackChain(acceptLanguage)) {
+            GreetingTemplate template = locales.get(locale);
+            if (null != template) {
+                return template;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set the greeting override for a locale.
+     *
+     * @param locale language tag, such as {@code de} or {@code en-us}
+     * @param greeting greeting (template) to use for the locale
+     */
+    void putLocale(String locale, String greeting) {
+        publish(Collections.emptyMap(),
+                Collections.singletonMap(normalizeLocale(locale), GreetingTemplate.compile(greeting)));
+    }
+
+    /**
+     * Number of defined overrides.
+     *
+     * @return override count
+     */
+    int size() {
+        return names.size() + locales.size();
+    }
+
+    /**
+     * Start a new bulk import.
+     *
+     * @return import that publishes its entries on {@link Import#commit()}
+     */
+    Import startImport() {
+        return new Import();
+    }
+
+    private synchronized void publish(Map<String, GreetingTemplate> newNames,
+                                      Map<String, GreetingTemplate> newLocales) {
+        names.merge(newNames);
+        locales.merge(newLocales);
+    }
+
+    static String normalizeLocale(String locale) {
+        return locale.trim().replace('_', '-').toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Locales to look up for an {@code Accept-Language} header, in order.
+     *
+     * @param acceptLanguage value of the {@code Accept-Language} header
+     * @return normalized language tags by quality, each followed by its less specific tags
+     */
+    static String[] fallbackChain(String acceptLanguage) {
+        String key = chainKey(acceptLanguage);
+        String[] chain = FALLBACK_CHAINS.get(key);
+        if (null == chain) {
+            chain = computeFallbackChain(key);
+            if (FALLBACK_CHAINS.size() >= CHAIN_CACHE_SIZE) {
+                FALLBACK_CHAINS.clear();
+            }
+            FALLBACK_CHAINS.put(key, chain);
+        }
+        return chain;
+    }
+
+    /**
+     * Header value without whitespace, in lower case and cut to whole ranges within the limits, so that
+     * spellings of the same preferences share a cache entry and long headers cost no more than short ones.
+     */
+    static String chainKey(String acceptLanguage) {
+        StringBuilder key = new StringBuilder(Math.min(acceptLanguage.length(), MAX_ACCEPT_LANGUAGE_LENGTH));
+        int ranges = 1;
+        for (int i = 0; i < acceptLanguage.length(); i++) {
+            char c = acceptLanguage.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (',' == c && ++ranges > MAX_LANGUAGE_RANGES) {
+                break;
+            }
+            if (key.length() == MAX_ACCEPT_LANGUAGE_LENGTH) {
+                if (',' != c) {
+                    // drop the range that does not fit
+                    key.setLength(Math.max(0, key.lastIndexOf(",")));
+                }
+                break;
+            }
+            key.append(Character.toLowerCase(c));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Fallback chain of a header value, computed without going through the cache.
+     *
+     * @param acceptLanguage value of the {@code Accept-Language} header
+     * @return normalized language tags by quality, each followed by its less specific tags
+     */
+    static String[] computeFallbackChain(String acceptLanguage) {
+        List<String> tags = new ArrayList<>();
+        List<Double> qualities = new ArrayList<>();
+        for (String range : acceptLanguage.split(",")) {
+            String[] parts = range.split(";");
+            String tag = normalizeLocale(parts[0]);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (tag.isEmpty() || "*".equals(tag) || quality <= 0) {
+                continue;
+            }
+            // stable insertion by descending quality
+            int index = tags.size();
+            while (index > 0 && qualities.get(index - 1) < quality) {
+                index--;
+            }
+            tags.add(index, tag);
+            qualities.add(index, quality);
+        }
+
+        List<String> chain = new ArrayList<>();
+        for (String tag : tags) {
+            String fallback = tag;
+            while (true) {
+                if (!chain.contains(fallback)) {
+                    chain.add(fallback);
+                }
+                int dash = fallback.lastIndexOf('-');
+                if (dash < 0) {
+                    break;
+                }
+                fallback = fallback.substring(0, dash);
+            }
+        }
+        return chain.toArray(new String[0]);
+    }
+
+    /**
+     * Incremental NDJSON import. Each line is a JSON object with a {@code greeting} and either a {@code name}
+     * or a {@code locale}, for example {@code {"name":"Joe","greeting":"Howdy"}}.
+     * Bytes can be fed in chunks of any size; lines may span chunks.
+     */
+    final class Import {
+        private final Map<String, GreetingTemplate> newNames = new HashMap<>();
+        private final Map<String, GreetingTemplate> newLocales = new HashMap<>();
+        // greetings repeat a lot in bulk data, compile each of them only once
+        private final Map<String, GreetingTemplate> templates = new HashMap<>();
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private int lineNumber;
+        private int count;
+
+        private Import() {
+        }
+
+        /**
+         * Process the next chunk of the stream.
+         *
+         * @param chunk bytes to process
+         * @throws ImportException if a complete line is not a valid entry
+         */
+        void feed(ByteBuffer chunk) {
+            while (chunk.hasRemaining()) {
+                byte b = chunk.get();
+                if (b == '\n') {
+                    endLine();
+                } else {
+                    append(b);
+                }
+            }
+        }
+
+        /**
+         * Process the last line (if not terminated) and publish all entries of this import.
+         *
+         * @return number of imported entries
+         * @throws ImportException if the last line is not a valid entry
+         */
+        int commit() {
+            endLine();
+            publish(newNames, newLocales);
+            return count;
+        }
+
+        private void append(byte b) {
+            if (lineLength == line.length) {
+                if (lineLength == MAX_LINE_LENGTH) {
+                    throw new ImportException(lineNumber + 1, "Line too long");
+                }
+                line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, lineLength * 2));
+            }
+            line[lineLength++] = b;
+        }
+
+        private void endLine() {
+            lineNumber++;
+            int length = lineLength;
+            lineLength = 0;
+            if (isBlank(length)) {
+                return;
+            }
+
+            JsonObject entry;
+            try (JsonReader reader = JSON.createReader(new ByteArrayInputStream(line, 0, length),
+                                                       StandardCharsets.UTF_8)) {
+                entry = reader.readObject();
+            } catch (JsonException e) {
+                throw new ImportException(lineNumber, "Invalid JSON");
+            }
+
+            String greeting = entry.getString("greeting", null);
+            if (null == greeting) {
+                throw new ImportException(lineNumber, "No greeting provided");
+            }
+            GreetingTemplate template = templates.computeIfAbsent(greeting, GreetingTemplate::compile);
+
+            String name = entry.getString("name", null);
+            if (null != name) {
+                newNames.put(name, template);
+            } else {
+                String locale = entry.getString("locale", null);
+                if (null == locale) {
+                    throw new ImportException(lineNumber, "No name or locale provided");
+                }
+                newLocales.put(normalizeLocale(locale), template);
+            }
+            count++;
+        }
+
+        private boolean isBlank(int length) {
+            for (int i = 0; i < length; i++) {
+                if (!Character.isWhitespace(line[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Invalid line in an import stream.
+     */
+    static final class ImportException extends RuntimeException {
+        private final int line;
+
+        ImportException(int line, String message) {
+            super(message);
+            this.line = line;
+        }
+
+        int line() {
+            return line;
+        }
+    }
+
+    /**
+     * Tables partitioned by key hash, so a write only copies the tables of the shards it changes.
+     */
+    private static final class ShardedTable {
+        private static final int SHARD_BITS = 4;
+
+        private final AtomicReferenceArray<Table> shards = new AtomicReferenceArray<>(1 << SHARD_BITS);
+
+        private ShardedTable() {
+            for (int i = 0; i < shards.length(); i++) {
+                shards.set(i, Table.EMPTY);
+            }
+        }
+
+        GreetingTemplate get(String key) {
+            return shards.get(shard(key)).get(key);
+        }
+
+        int size() {
+            int size = 0;
+            for (int i = 0; i < shards.length(); i++) {
+                size += shards.get(i).size;
+            }
+            return size;
+        }
+
+        // callers serialize writes
+        void merge(Map<String, GreetingTemplate> entries) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            List<Map<String, GreetingTemplate>> byShard = new ArrayList<>(shards.length());
+            for (int i = 0; i < shards.length(); i++) {
+                byShard.add(null);
+            }
+            for (Map.Entry<String, GreetingTemplate> entry : entries.entrySet()) {
+                int shard = shard(entry.getKey());
+                Map<String, GreetingTemplate> shardEntries = byShard.get(shard);
+                if (null == shardEntries) {
+                    shardEntries = new HashMap<>();
+                    byShard.set(shard, shardEntries);
+                }
+                shardEntries.put(entry.getKey(), entry.getValue());
+            }
+            for (int i = 0; i < shards.length(); i++) {
+                Map<String, GreetingTemplate> shardEntries = byShard.get(i);
+                if (null != shardEntries) {
+                    shards.set(i, shards.get(i).merge(shardEntries));
+                }
+            }
+        }
+
+        // the top bits of a multiplicative hash, independent of the low bits used for the slot within a table
+        private static int shard(String key) {
+            return (key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - SHARD_BITS);
+        }
+    }
+
+    /**
+     * Immutable open-addressing hash table with linear probing over parallel key and value arrays.
+     */
+    private static final class Table {
+        private static final Table EMPTY = new Table(new String[1], new GreetingTemplate[1], 0);
+
+        private final String[] keys;
+        private final GreetingTemplate[] values;
+        private final int mask;
+        private final int size;
+
+        private Table(String[] keys, GreetingTemplate[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.mask = keys.length - 1;
+            this.size = size;
+        }
+
+        GreetingTemplate get(String key) {
+            int i = spread(key.hashCode()) & mask;
+            String candidate;
+            while ((candidate = keys[i]) != null) {
+                if (candidate.equals(key)) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        Table merge(Map<String, GreetingTemplate> entries) {
+            // keep load factor at or below 0.5 to keep probe sequences short
+            int capacity = Integer.highestOneBit(Math.max(1, size + entries.size()) * 2 - 1) << 1;
+            String[] newKeys = new String[capacity];
+            GreetingTemplate[] newValues = new GreetingTemplate[capacity];
+            int newSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && !entries.containsKey(keys[i])) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                    newSize++;
+                }
+            }
+            for (Map.Entry<String, GreetingTemplate> entry : entries.entrySet()) {
+                insert(newKeys, newValues, entry.getKey(), entry.getValue());
+                newSize++;
+            }
+            return new Table(newKeys, newValues, newSize);
+        }
+
+        private static void insert(String[] keys, GreetingTemplate[] values, String key, GreetingTemplate value) {
+            int mask = keys.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -23,11 +23,12 @@ import javax.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
- * Provider for greeting message.
+ * Provider for greeting message. Greetings are compiled to {@link GreetingTemplate}s when they are set.
  */
 @ApplicationScoped
 public class GreetingProvider {
-    private final AtomicReference<String> message = new AtomicReference<>();
+    private final AtomicReference<GreetingTemplate> message = new AtomicReference<>();
+    private final GreetingOverrides overrides = new GreetingOverrides();
 
     /**
      * Create a new greeting provider, reading the message from configuration.
@@ -36,14 +37,33 @@ public class GreetingProvider {
      */
     @Inject
     public GreetingProvider(@ConfigProperty(name = "app.greeting") String message) {
-        this.message.set(message);
+        this.message.set(GreetingTemplate.compile(message));
     }
 
-    String getMessage() {
+    GreetingTemplate getMessage() {
         return message.get();
     }
 
+    /**
+     * Greeting for a name, taking per-name and per-locale overrides into account.
+     *
+     * @param name name to greet
+     * @param acceptLanguage value of the {@code Accept-Language} header, may be {@code null}
+     * @return greeting to use
+     */
+    GreetingTemplate getMessage(String name, String acceptLanguage) {
+        GreetingTemplate override = overrides.forName(name);
+        if (null == override && null != acceptLanguage) {
+            override = overrides.forAcceptLanguage(acceptLanguage);
+        }
+        return (null == override) ? message.get() : override;
+    }
+
     void setMessage(String message) {
-        this.message.set(message);
+        this.message.set(GreetingTemplate.compile(message));
+    }
+
+    GreetingOverrides overrides() {
+        return overrides;
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Greeting template, compiled once into an array of literal and placeholder segments.
+ * <p>
+ * Supported placeholders:
+ * <ul>
+ *     <li>{@code {name}} - the name to greet</li>
+ *     <li>{@code {time}} - current local time, {@code HH:mm:ss}</li>
+ *     <li>{@code {header:<header-name>}} - value of a request header, empty if not present</li>
+ * </ul>
+ * A template without {@code {name}} is a plain greeting such as {@code Hello}, and is rendered
+ * as {@code <greeting> <name>!}. Unknown placeholders are rendered literally.
+ */
+final class GreetingTemplate {
+    private static final int LITERAL = 0;
+    private static final int NAME = 1;
+    private static final int TIME = 2;
+    private static final int HEADER = 3;
+
+    private static final String HEADER_PREFIX = "header:";
+    // assumed length of a rendered header value, used to size the builder
+    private static final int HEADER_ESTIMATE = 16;
+    private static final int MAX_REUSED_CAPACITY = 1024;
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, "");
+
+    private final String source;
+    private final int[] kinds;
+    private final String[] values;
+    private final int estimatedLength;
+
+    private GreetingTemplate(String source, List<Integer> kinds, List<String> values) {
+        this.source = source;
+        this.kinds = new int[kinds.size()];
+        this.values = values.toArray(new String[0]);
+        int estimatedLength = 0;
+        for (int i = 0; i < this.kinds.length; i++) {
+            int kind = kinds.get(i);
+            this.kinds[i] = kind;
+            if (kind == LITERAL) {
+                estimatedLength += this.values[i].length();
+            } else if (kind == TIME) {
+                estimatedLength += 8;
+            } else if (kind == HEADER) {
+                estimatedLength += HEADER_ESTIMATE;
+            }
+        }
+        this.estimatedLength = estimatedLength;
+    }
+
+    /**
+     * Compile a template.
+     *
+     * @param template greeting or greeting template
+     * @return compiled template
+     */
+    static GreetingTemplate compile(String template) {
+        List<Integer> kinds = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean hasName = false;
+
+        int position = 0;
+        while (position < template.length()) {
+            int open = template.indexOf('{', position);
+            int close = (open < 0) ? -1 : template.indexOf('}', open);
+            if (close < 0) {
+                literal.append(template, position, template.length());
+                break;
+            }
+            literal.append(template, position, open);
+            String placeholder = template.substring(open + 1, close);
+            int kind = kind(placeholder);
+            if (kind == LITERAL) {
+                literal.append('{');
+                position = open + 1;
+                continue;
+            }
+            hasName |= (kind == NAME);
+            addLiteral(kinds, values, literal);
+            kinds.add(kind);
+            values.add((kind == HEADER) ? placeholder.substring(HEADER_PREFIX.length()) : null);
+            position = close + 1;
+        }
+
+        if (!hasName) {
+            // plain greeting
+            literal.append(' ');
+            addLiteral(kinds, values, literal);
+            kinds.add(NAME);
+            values.add(null);
+            literal.append('!');
+        }
+        addLiteral(kinds, values, literal);
+
+        return new GreetingTemplate(template, kinds, values);
+    }
+
+    /**
+     * Render a greeting.
+     *
+     * @param name name to greet
+     * @param headers function returning the value of a request header or {@code null} if not present
+     * @return greeting message
+     */
+    String render(String name, Function<String, String> headers) {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.ensureCapacity(estimatedLength + name.length());
+
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+            case LITERAL:
+                builder.append(values[i]);
+                break;
+            case NAME:
+                builder.append(name);
+                break;
+            case TIME:
+                builder.append(time());
+                break;
+            case HEADER:
+                String value = headers.apply(values[i]);
+                if (null != value) {
+                    builder.append(value);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        String message = builder.toString();
+        if (builder.capacity() > MAX_REUSED_CAPACITY) {
+            // do not keep a large buffer around after an unusually long greeting
+            BUILDER.remove();
+        }
+        return message;
+    }
+
+    /**
+     * The template this instance was compiled from.
+     *
+     * @return template source
+     */
+    String source() {
+        return source;
+    }
+
+    private static int kind(String placeholder) {
+        if ("name".equals(placeholder)) {
+            return NAME;
+        }
+        if ("time".equals(placeholder)) {
+            return TIME;
+        }
+        if (placeholder.startsWith(HEADER_PREFIX) && placeholder.length() > HEADER_PREFIX.length()) {
+            return HEADER;
+        }
+        return LITERAL;
+    }
+
+    private static void addLiteral(List<Integer> kinds, List<String> values, StringBuilder literal) {
+        if (literal.length() > 0) {
+            kinds.add(LITERAL);
+            values.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    // formatting the time is more expensive than the rest of the greeting, so it is done once per second
+    private static String time() {
+        long second = System.currentTimeMillis() / 1000;
+        CachedTime cached = cachedTime;
+        if (cached.second != second) {
+            LocalTime now = LocalTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault());
+            cached = new CachedTime(second, TIME_FORMAT.format(now));
+            cachedTime = cached;
+        }
+        return cached.text;
+    }
+
+    private static final class CachedTime {
+        private final long second;
+        private final String text;
+
+        private CachedTime(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a greeting update. The event duration is the time spent applying the update.
+ */
+@Name("io.helidon.examples.quickstart.GreetingUpdate")
+@Label("Greeting Update")
+@Category({"Helidon", "Quickstart"})
+@StackTrace(false)
+final class GreetingUpdateEvent extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Entries")
+    int entries;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadSize;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.time.Duration;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.BeforeShutdown;
+import javax.enterprise.inject.spi.Extension;
+
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * CDI extension that starts {@link JvmTelemetry} with the container and stops it on shutdown.
+ * <p>
+ * Configured through {@code app.telemetry.enabled}, {@code app.telemetry.interval-seconds}
+ * and {@code app.telemetry.threshold-millis}.
+ */
+public class JvmTelemetryExtension implements Extension {
+    private JvmTelemetry telemetry;
+
+    void start(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        Config config = ConfigProvider.getConfig();
+        if (!config.getOptionalValue("app.telemetry.enabled", Boolean.class).orElse(false)) {
+            return;
+        }
+        telemetry = JvmTelemetry.create(
+                Duration.ofSeconds(config.getOptionalValue("app.telemetry.interval-seconds", Long.class).orElse(5L)),
+                Duration.ofMillis(config.getOptionalValue("app.telemetry.threshold-millis", Long.class).orElse(10L)),
+                RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+    }
+
+    void stop(@Observes BeforeShutdown event) {
+        if (null != telemetry) {
+            telemetry.stop();
+        }
+    }
+}
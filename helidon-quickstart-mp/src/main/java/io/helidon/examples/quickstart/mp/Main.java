@@ -18,12 +18,24 @@ package io.helidon.examples.quickstart.mp;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 import java.util.logging.LogManager;
 
+import javax.enterprise.inject.se.SeContainer;
+import javax.enterprise.inject.spi.CDI;
+
 import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
 import io.helidon.config.PollingStrategies;
+import io.helidon.config.spi.ConfigSource;
+import io.helidon.metrics.RegistryFactory;
 import io.helidon.microprofile.server.Server;
 
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
 import static io.helidon.config.ConfigSources.classpath;
 import static io.helidon.config.ConfigSources.file;
 
@@ -46,6 +58,8 @@ public final class Main {
         // as we use default HTTP connection for Jersey client, we should set this as we set the Authorization header
         // when propagating security
         System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
+        // log handlers stay open until the shutdown hook is done, must be set before logging is initialized
+        System.setProperty("java.util.logging.manager", ShutdownLogManager.class.getName());
 
         setupLogging();
 
@@ -55,36 +69,81 @@ public final class Main {
     }
 
     /**
-     * Start the server.
+     * Start the server, its (optional) JIT warm-up and the drain on shutdown.
      * @return the created {@link Server} instance
      */
     static Server startServer() {
+        // the container is closed by the ordered shutdown below, not by a shutdown hook of its own
+        System.setProperty("org.jboss.weld.se.shutdownHook", "false");
+
         // Server will automatically pick up configuration from
         // microprofile-config.properties
         // and Application classes annotated as @ApplicationScoped
-        return Server.builder()
-                .config(buildConfig())
-                .build()
+        Config config = buildConfig();
+        Server.Builder builder = Server.builder()
+                .config(config);
+        // in virtual mode every resource method runs on a virtual thread of its own instead of the server thread pool
+        String mode = config.get("app.execution.mode").asString().orElse(BlockingExecutor.MODE_PLATFORM);
+        ExecutorService virtual = BlockingExecutor.MODE_VIRTUAL.equals(mode) ? BlockingExecutor.virtualExecutor() : null;
+        if (null != virtual) {
+            builder.defaultExecutorService(() -> virtual);
+        }
+        Server server = builder.build()
                 .start();
+
+        // the server reports ready once the warm-up completes
+        CDI.current().select(WarmUp.class).get().start(server.port());
+        // a single ordered shutdown on SIGTERM: drain in-flight requests, stop the server, then close CDI and logging
+        CDI<Object> container = CDI.current();
+        Drain drain = container.select(Drain.class).get();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server, container, drain), "shutdown"));
+
+        return server;
+    }
+
+    private static void shutdown(Server server, CDI<Object> container, Drain drain) {
+        drain.drain();
+        try {
+            server.stop();
+        } catch (RuntimeException e) {
+            System.err.println("Server did not stop cleanly: " + e.getMessage());
+        }
+        if (container instanceof SeContainer && ((SeContainer) container).isRunning()) {
+            ((SeContainer) container).close();
+        }
+        ShutdownLogManager.closeLogging();
     }
 
     private static Config buildConfig() {
+        // pool sizes derived from the container limits (app.sizing.mode=auto) take precedence over all other sources
+        AutoSizing sizing = AutoSizing.create(Config.builder().sources(sources(false)).build().get("app.sizing"));
+        sizing.apply(RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+
+        List<Supplier<ConfigSource>> sources = sources(true);
+        sources.add(0, ConfigSources.create(sizing.overrides()));
         return Config.builder()
-                .sources(
-                        file("../conf/mp.yaml")
-                                .pollingStrategy(PollingStrategies::watch)
-                                .optional(),
-                        classpath("application.yaml").optional(),
-                        classpath("META-INF/microprofile-config.properties"))
+                .sources(sources)
                 .build();
     }
 
+    private static List<Supplier<ConfigSource>> sources(boolean watch) {
+        List<Supplier<ConfigSource>> sources = new ArrayList<>();
+        sources.add(watch
+                            ? file("../conf/mp.yaml").pollingStrategy(PollingStrategies::watch).optional()
+                            : file("../conf/mp.yaml").optional());
+        sources.add(classpath("application.yaml").optional());
+        sources.add(classpath("META-INF/microprofile-config.properties"));
+        return sources;
+    }
+
     /**
      * Configure logging from logging.properties file.
+     * Log records are written by {@link AsyncLogHandler}, its counters are exposed as vendor metrics.
      */
     private static void setupLogging() throws IOException {
         try (InputStream is = Main.class.getResourceAsStream("/logging.properties")) {
             LogManager.getLogManager().readConfiguration(is);
         }
+        AsyncLogHandler.registerMetrics(RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
     }
 }
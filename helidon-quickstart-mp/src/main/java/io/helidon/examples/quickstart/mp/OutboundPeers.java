@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Client side load balancing and request hedging across a list of peers.
+ * <p>
+ * Configured from the {@code app.outbound} properties:
+ * <ul>
+ *     <li>{@code peers} - base URIs of the peers, comma separated</li>
+ *     <li>{@code protocol} - {@code json} (default) or {@code binary} (see {@link GreetFrames})</li>
+ *     <li>{@code balancer} - {@code p2c} (power of two choices, default) or {@code least-outstanding}</li>
+ *     <li>{@code timeout-millis} - connect and read timeout of each request to a peer, defaults to {@code 5000}</li>
+ *     <li>{@code hedge.enabled} - whether to send a backup request to a second peer when the first one is slow</li>
+ *     <li>{@code hedge.percentile} - latency percentile after which the backup request is sent</li>
+ *     <li>{@code hedge.min-delay-millis} - lower bound of the hedge delay</li>
+ *     <li>{@code hedge.threads} - platform threads reserved for backup requests, defaults to {@code 8}</li>
+ * </ul>
+ * Requests are blocking calls run on the {@link BlockingExecutor}. In its {@code platform} mode, backup requests run on
+ * threads of their own, so they do not queue behind the primary requests they are meant to overtake; only when all of
+ * these threads are busy is a backup request queued on the blocking executor. In {@code virtual} mode no request
+ * waits for a thread, so backup requests run on the blocking executor as well.
+ */
+@ApplicationScoped
+public class OutboundPeers {
+    static final String BALANCER_P2C = "p2c";
+    static final String BALANCER_LEAST_OUTSTANDING = "least-outstanding";
+    static final String PROTOCOL_JSON = "json";
+    static final String PROTOCOL_BINARY = "binary";
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbound-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Client client = ClientBuilder.newClient();
+    private final List<Peer> peers;
+    private final boolean leastOutstanding;
+    private final boolean binary;
+    private final boolean hedging;
+    private final double hedgePercentile;
+    private final long minHedgeDelayNanos;
+    private final long timeoutMillis;
+    private final BlockingExecutor executor;
+    // null unless hedging in platform mode
+    private final ExecutorService hedgeExecutor;
+    private final Histogram latency;
+    private final Counter hedgesFired;
+    private final Counter hedgeWins;
+
+    private volatile long hedgeDelayNanos;
+    private volatile long hedgeDelayComputedAt;
+
+    /**
+     * Create outbound peers from configuration.
+     *
+     * @param peers base URIs of the peers
+     * @param balancer load balancer, {@code p2c} or {@code least-outstanding}
+     * @param protocol protocol to call peers with, {@code json} or {@code binary}
+     * @param hedging whether to hedge requests
+     * @param hedgePercentile latency percentile after which the backup request is sent
+     * @param minHedgeDelayMillis lower bound of the hedge delay
+     * @param hedgeThreads number of platform threads reserved for backup requests
+     * @param timeoutMillis connect and read timeout of each request to a peer
+     * @param executor executor to run the (blocking) calls on
+     * @param registry application metric registry
+     */
+    @Inject
+    public OutboundPeers(@ConfigProperty(name = "app.outbound.peers") List<String> peers,
+                         @ConfigProperty(name = "app.outbound.balancer", defaultValue = BALANCER_P2C) String balancer,
+                         @ConfigProperty(name = "app.outbound.protocol", defaultValue = PROTOCOL_JSON) String protocol,
+                         @ConfigProperty(name = "app.outbound.hedge.enabled", defaultValue = "false") boolean hedging,
+                         @ConfigProperty(name = "app.outbound.hedge.percentile", defaultValue = "0.95")
+                                 double hedgePercentile,
+                         @ConfigProperty(name = "app.outbound.hedge.min-delay-millis", defaultValue = "5")
+                                 long minHedgeDelayMillis,
+                         @ConfigProperty(name = "app.outbound.hedge.threads", defaultValue = "8") int hedgeThreads,
+                         @ConfigProperty(name = "app.outbound.timeout-millis", defaultValue = "5000") long timeoutMillis,
+                         BlockingExecutor executor,
+                         MetricRegistry registry) {
+        List<Peer> peerList = new ArrayList<>();
+        for (String uri : peers) {
+            peerList.add(new Peer(client.target(uri.trim())
+                                          .property(ClientProperties.CONNECT_TIMEOUT, (int) timeoutMillis)
+                                          .property(ClientProperties.READ_TIMEOUT, (int) timeoutMillis)));
+        }
+        if (peerList.isEmpty()) {
+            throw new IllegalArgumentException("At least one outbound peer must be configured");
+        }
+        this.peers = peerList;
+        this.leastOutstanding = BALANCER_LEAST_OUTSTANDING.equals(balancer);
+        this.binary = PROTOCOL_BINARY.equals(protocol);
+        this.hedging = hedging && peerList.size() > 1;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.hedgeDelayNanos = minHedgeDelayNanos;
+        this.hedgeDelayComputedAt = System.nanoTime();
+        this.executor = executor;
+        this.hedgeExecutor = (this.hedging && BlockingExecutor.MODE_PLATFORM.equals(executor.mode()))
+                ? hedgeExecutor(hedgeThreads)
+                : null;
+
+        this.latency = registry.histogram("outbound.latency");
+        this.hedgesFired = registry.counter("outbound.hedge.fired");
+        this.hedgeWins = registry.counter("outbound.hedge.wins");
+    }
+
+    /**
+     * Call one of the peers, hedging the call if configured.
+     *
+     * @param call blocking call to execute against a peer target
+     * @param payloadSize size of a response body in bytes, for {@link OutboundEvent}
+     * @param <T> type of the response
+     * @return completion stage with the first successful response
+     */
+    <T> CompletionStage<T> call(Function<WebTarget, T> call, ToIntFunction<T> payloadSize) {
+        HedgedCall<T> hedgedCall = new HedgedCall<>(call, payloadSize, select(null));
+        hedgedCall.start();
+        return hedgedCall.result;
+    }
+
+    /**
+     * Whether peers are called with the binary protocol.
+     *
+     * @return {@code true} for {@link GreetFrames}, {@code false} for JSON
+     */
+    boolean binary() {
+        return binary;
+    }
+
+    /**
+     * Number of calls to peers in progress.
+     *
+     * @return outstanding calls across all peers
+     */
+    int outstanding() {
+        int outstanding = 0;
+        for (Peer peer : peers) {
+            outstanding += peer.outstanding.get();
+        }
+        return outstanding;
+    }
+
+    /**
+     * Longest time a call takes: a request and its backup request (or retry), each bounded by the timeout.
+     *
+     * @return call timeout in milliseconds
+     */
+    long callTimeoutMillis() {
+        return 2 * timeoutMillis;
+    }
+
+    private Peer select(Peer exclude) {
+        int size = peers.size();
+        if (size == 1) {
+            return peers.get(0);
+        }
+        if (leastOutstanding) {
+            Peer best = null;
+            for (Peer peer : peers) {
+                if (peer != exclude && (best == null || peer.outstanding.get() < best.outstanding.get())) {
+                    best = peer;
+                }
+            }
+            return best;
+        }
+        // power of two choices: two distinct random peers, take the less loaded one
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Peer first = randomPeer(random, exclude);
+        Peer second = randomPeer(random, exclude);
+        if (size > ((null == exclude) ? 1 : 2)) {
+            while (second == first) {
+                second = randomPeer(random, exclude);
+            }
+        }
+        return (second.outstanding.get() < first.outstanding.get()) ? second : first;
+    }
+
+    private Peer randomPeer(ThreadLocalRandom random, Peer exclude) {
+        Peer peer;
+        do {
+            peer = peers.get(random.nextInt(peers.size()));
+        } while (peer == exclude);
+        return peer;
+    }
+
+    @PreDestroy
+    void close() {
+        client.close();
+        if (null != hedgeExecutor) {
+            hedgeExecutor.shutdown();
+        }
+    }
+
+    private Future<?> submit(Runnable attempt, boolean backup) {
+        if (backup && null != hedgeExecutor) {
+            try {
+                return hedgeExecutor.submit(attempt);
+            } catch (RejectedExecutionException e) {
+                // all hedge threads are busy, queue with the primary requests
+            }
+        }
+        return executor.submit(attempt);
+    }
+
+    private long hedgeDelayNanos() {
+        // snapshots are not free, so the delay is recomputed at most every DELAY_REFRESH_NANOS
+        long now = System.nanoTime();
+        if (now - hedgeDelayComputedAt > DELAY_REFRESH_NANOS) {
+            hedgeDelayComputedAt = now;
+            hedgeDelayNanos = Math.max(minHedgeDelayNanos, (long) latency.getSnapshot().getValue(hedgePercentile));
+        }
+        return hedgeDelayNanos;
+    }
+
+    // no queue: a backup request that would wait for a hedge thread is handed over to the blocking executor instead
+    private static ExecutorService hedgeExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "outbound-backup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                             threads,
+                                                             60,
+                                                             TimeUnit.SECONDS,
+                                                             new SynchronousQueue<>(),
+                                                             factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class Peer {
+        private final WebTarget target;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Peer(WebTarget target) {
+            this.target = target;
+        }
+    }
+
+    private final class HedgedCall<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Queue<Attempt> attempts = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger();
+        // set once a backup request was sent (or when it must not be sent at all)
+        private final AtomicBoolean hedged = new AtomicBoolean(!hedging);
+        private final Function<WebTarget, T> call;
+        private final ToIntFunction<T> payloadSize;
+        private final Peer primary;
+
+        private HedgedCall(Function<WebTarget, T> call, ToIntFunction<T> payloadSize, Peer primary) {
+            this.call = call;
+            this.payloadSize = payloadSize;
+            this.primary = primary;
+        }
+
+        private void start() {
+            running.incrementAndGet();
+            attempt(primary, false);
+            if (!hedged.get()) {
+                ScheduledFuture<?> timer = SCHEDULER.schedule(this::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+                result.whenComplete((value, throwable) -> timer.cancel(false));
+            }
+            // abandon the loser if it is still queued; this runs on the winner's thread, so requests that are
+            // already running (including the winner) are not interrupted - a running loser ends at its read timeout
+            result.whenComplete((value, throwable) -> attempts.forEach(Attempt::abandon));
+        }
+
+        private void hedge() {
+            if (result.isDone()) {
+                return;
+            }
+            // counted as running before the flag is set, so a failed request that loses the race for the flag
+            // against the hedge timer still sees the backup request as running
+            running.incrementAndGet();
+            if (!hedged.compareAndSet(false, true)) {
+                running.decrementAndGet();
+                return;
+            }
+            hedgesFired.inc();
+            attempt(select(primary), true);
+        }
+
+        private void attempt(Peer peer, boolean backup) {
+            Attempt attempt = new Attempt(peer, backup);
+            attempts.add(attempt);
+            try {
+                attempt.future = submit(attempt, backup);
+            } catch (RejectedExecutionException e) {
+                attempt.abandon();
+                failed(e);
+            }
+        }
+
+        private void commit(OutboundEvent event, Peer peer, boolean backup, T value) {
+            if (event.shouldCommit()) {
+                event.peer = peer.target.getUri().toString();
+                event.backup = backup;
+                event.success = (null != value);
+                event.payloadSize = (null == value) ? 0 : payloadSize.applyAsInt(value);
+                event.commit();
+            }
+        }
+
+        private void failed(Throwable throwable) {
+            if (running.decrementAndGet() > 0 || result.isDone()) {
+                return;
+            }
+            // the only request failed - use the backup request (if any) as a retry
+            hedge();
+            if (running.get() == 0) {
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * A request to one peer. Counted as outstanding from submission until it completes (each request is bounded
+         * by the per-attempt timeout), or until it is abandoned while still queued.
+         */
+        private final class Attempt implements Runnable {
+            private final AtomicBoolean started = new AtomicBoolean();
+            private final Peer peer;
+            private final boolean backup;
+            private volatile Future<?> future;
+
+            private Attempt(Peer peer, boolean backup) {
+                this.peer = peer;
+                this.backup = backup;
+                peer.outstanding.incrementAndGet();
+            }
+
+            @Override
+            public void run() {
+                if (!started.compareAndSet(false, true)) {
+                    // abandoned while queued
+                    return;
+                }
+                OutboundEvent event = new OutboundEvent();
+                event.begin();
+                long start = System.nanoTime();
+                T value;
+                try {
+                    value = call.apply(peer.target);
+                } catch (Throwable throwable) {
+                    peer.outstanding.decrementAndGet();
+                    commit(event, peer, backup, null);
+                    failed(throwable);
+                    return;
+                }
+                latency.update(System.nanoTime() - start);
+                // released before the call completes, so the request is not outstanding anymore once it is answered
+                peer.outstanding.decrementAndGet();
+                commit(event, peer, backup, value);
+                if (result.complete(value) && backup) {
+                    hedgeWins.inc();
+                }
+            }
+
+            private void abandon() {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                // never started, so it is not outstanding anymore
+                peer.outstanding.decrementAndGet();
+                Future<?> submitted = future;
+                if (null != submitted) {
+                    submitted.cancel(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.security.RolesAllowed;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import io.helidon.security.annotations.Authenticated;
+
+/**
+ * Admin resource to record the server with Java Flight Recorder. Example:
+ *
+ * Record for 60 seconds using the "profile" settings:
+ * curl -u jack:password -o greet.jfr "http://localhost:8081/admin/jfr?profile=profile&duration=60"
+ *
+ * The recording includes the custom greeting events (responses, outbound calls and greeting updates).
+ */
+@javax.ws.rs.Path("/admin")
+@RequestScoped
+public class ProfilingResource {
+
+    private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
+
+    private static final Logger LOGGER = Logger.getLogger(ProfilingResource.class.getName());
+
+    private final Profiler profiler;
+
+    /**
+     * Create a new profiling resource.
+     *
+     * @param profiler profiler to record with
+     */
+    @Inject
+    public ProfilingResource(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Record for the requested duration and send back the recording.
+     *
+     * @param profile name of the JFR configuration to use
+     * @param seconds how long to record
+     * @param response suspended response, resumed with the recording
+     */
+    @SuppressWarnings("checkstyle:designforextension")
+    @javax.ws.rs.Path("/jfr")
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @RolesAllowed("admin")
+    @Authenticated
+    public void record(@QueryParam("profile") @DefaultValue(Profiler.DEFAULT_PROFILE) String profile,
+                       @QueryParam("duration") @DefaultValue("30") long seconds,
+                       @Suspended AsyncResponse response) {
+        try {
+            profiler.record(profile, Duration.ofSeconds(seconds))
+                    .whenComplete((file, throwable) -> {
+                        if (null == throwable) {
+                            response.resume(recording(file));
+                        } else {
+                            LOGGER.log(Level.WARNING, "Recording failed", throwable);
+                            response.resume(error(Response.Status.INTERNAL_SERVER_ERROR, "Recording failed"));
+                        }
+                    });
+        } catch (IllegalArgumentException e) {
+            response.resume(error(Response.Status.BAD_REQUEST, e.getMessage()));
+        } catch (IllegalStateException e) {
+            response.resume(error(Response.Status.CONFLICT, e.getMessage()));
+        }
+    }
+
+    private static Response recording(Path file) {
+        StreamingOutput output = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                delete(file);
+            }
+        };
+        return Response.ok(output)
+                .header("Content-Disposition", "attachment; filename=\"greet.jfr\"")
+                .build();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete recording " + file, e);
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        JsonObject entity = JSON.createObjectBuilder()
+                .add("error", message)
+                .build();
+        return Response.status(status).entity(entity).type(MediaType.APPLICATION_JSON).build();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Wraps resource method invocations in a {@link RouteEvent}, so {@link JvmTelemetry} can attribute allocations
+ * to routes. The route is the HTTP method and the path template of the resource method, such as
+ * {@code GET /greet/{name}}, or {@code other} for requests not matched to a resource method.
+ * <p>
+ * Only invocations that complete on the thread that started them are recorded; for suspended (asynchronous)
+ * responses the span would otherwise cover unrelated work of the request thread.
+ */
+@Provider
+public class RouteEventFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String EVENT_PROPERTY = RouteEvent.class.getName();
+    private static final String THREAD_PROPERTY = EVENT_PROPERTY + ".thread";
+    private static final String OTHER_ROUTE = "other";
+    private static final Map<Method, String> TEMPLATES = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        RouteEvent event = new RouteEvent();
+        event.begin();
+        requestContext.setProperty(EVENT_PROPERTY, event);
+        requestContext.setProperty(THREAD_PROPERTY, Thread.currentThread());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object event = requestContext.getProperty(EVENT_PROPERTY);
+        if (!(event instanceof RouteEvent) || requestContext.getProperty(THREAD_PROPERTY) != Thread.currentThread()) {
+            return;
+        }
+        RouteEvent routeEvent = (RouteEvent) event;
+        if (routeEvent.shouldCommit()) {
+            Method method = resourceInfo.getResourceMethod();
+            // requests not matching a resource method (such as 404 probes) share one route, to bound the tags
+            routeEvent.route = (null == method)
+                    ? OTHER_ROUTE
+                    : requestContext.getMethod() + " " + TEMPLATES.computeIfAbsent(method, RouteEventFilter::template);
+            routeEvent.commit();
+        }
+    }
+
+    private static String template(Method method) {
+        StringBuilder template = new StringBuilder();
+        append(template, method.getDeclaringClass().getAnnotation(Path.class));
+        append(template, method.getAnnotation(Path.class));
+        return template.toString();
+    }
+
+    private static void append(StringBuilder template, Path path) {
+        if (null == path) {
+            return;
+        }
+        String value = path.value();
+        if (!value.startsWith("/")) {
+            template.append('/');
+        }
+        template.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+import io.helidon.security.AuthenticationResponse;
+import io.helidon.security.EndpointConfig;
+import io.helidon.security.OutboundSecurityResponse;
+import io.helidon.security.Security;
+import io.helidon.security.SecurityContext;
+import io.helidon.security.SecurityEnvironment;
+import io.helidon.security.SecurityResponse;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Outbound {@link CachedSignatureProvider} verified by the stock {@code http-signatures} provider.
+ */
+class CachedSignatureProviderTest {
+    private static final String HOST = "localhost:8080";
+
+    private static Security client;
+    private static Security server;
+
+    @BeforeAll
+    static void createSecurity() {
+        Config config = Config.create(ConfigSources.classpath("signatures-test.yaml"));
+        client = Security.create(config.get("client"));
+        server = Security.create(config.get("server"));
+    }
+
+    @Test
+    void testSignatureVerifiesWithStockProvider() {
+        AuthenticationResponse response = authenticate("/greet/Joe", signed("/greet/Joe"));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS, response.status(), "status");
+        Assertions.assertEquals("MP Service", response.service().get().principal().getName(), "service principal");
+    }
+
+    @Test
+    void testCachedSignatureVerifiesOnlyForItsRequest() {
+        Map<String, List<String>> first = signed("/greet/Joe");
+        Map<String, List<String>> second = signed("/greet/Joe");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS,
+                                authenticate("/greet/Joe", second).status(),
+                                "status - signature of an identical request");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Jack", first).status(),
+                                "status - different request target");
+
+        Map<String, List<String>> other = signed("/greet/Jack");
+        Assertions.assertNotEquals(header(first, "signature"), header(other, "signature"), "signature of another request");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS,
+                                authenticate("/greet/Jack", other).status(),
+                                "status - other request");
+    }
+
+    private static Map<String, List<String>> signed(String path) {
+        SecurityContext context = client.createContext("test-client");
+        SecurityEnvironment env = SecurityEnvironment.builder()
+                .method("GET")
+                .path(path)
+                .targetUri(URI.create("http://" + HOST + path))
+                .build();
+        OutboundSecurityResponse response = context.outboundClientBuilder()
+                .outboundEnvironment(env)
+                .outboundEndpointConfig(EndpointConfig.create())
+                .buildAndGet();
+        // the client sends the host header itself
+        Map<String, List<String>> headers = new HashMap<>(response.requestHeaders());
+        headers.put("host", List.of(HOST));
+        return headers;
+    }
+
+    private static AuthenticationResponse authenticate(String path, Map<String, List<String>> headers) {
+        SecurityContext context = server.createContext("test-server");
+        context.env(SecurityEnvironment.builder()
+                            .method("GET")
+                            .path(path)
+                            .targetUri(URI.create("http://" + HOST + path))
+                            .headers(headers)
+                            .build());
+        return context.atnClientBuilder().buildAndGet();
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        return headers.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(name))
+                .findFirst()
+                .map(entry -> entry.getValue().get(0))
+                .orElse(null);
+    }
+}
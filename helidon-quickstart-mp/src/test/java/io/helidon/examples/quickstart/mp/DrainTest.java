@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Response;
+
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Draining of {@link Drain} with requests tracked by its {@link DrainFilter}; each test drains a drain of its own.
+ */
+class DrainTest {
+    private static final MetricRegistry VENDOR = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR);
+
+    private static BlockingExecutor executor;
+    private static OutboundPeers peers;
+
+    @BeforeAll
+    static void createPeers() {
+        executor = new BlockingExecutor(BlockingExecutor.MODE_PLATFORM, 8, 100, false, 8, 5, VENDOR);
+        peers = new OutboundPeers(List.of("http://a.example/greet"),
+                                  OutboundPeers.BALANCER_P2C,
+                                  OutboundPeers.PROTOCOL_JSON,
+                                  false,
+                                  0.95,
+                                  5,
+                                  2,
+                                  5000,
+                                  executor,
+                                  RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.APPLICATION));
+    }
+
+    @AfterAll
+    static void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testRejectWhileDraining() throws Exception {
+        Drain drain = new Drain(true, 1, peers, VENDOR);
+        DrainFilter filter = new DrainFilter(drain);
+        long abandoned = VENDOR.counter("drain.abandoned").getCount();
+        long drains = VENDOR.timer("drain.duration").getCount();
+
+        RequestContext inFlight = new RequestContext();
+        filter.filter(inFlight.context);
+        Assertions.assertNull(inFlight.aborted.get(), "accepted before draining");
+        Assertions.assertEquals(HealthCheckResponse.State.UP, drain.call().getState(), "ready before draining");
+
+        CompletableFuture<Void> draining = CompletableFuture.runAsync(drain::drain);
+        awaitDown(drain);
+        RequestContext rejected = new RequestContext();
+        filter.filter(rejected.context);
+        Response response = rejected.aborted.get();
+        Assertions.assertNotNull(response, "rejected while draining");
+        Assertions.assertEquals(503, response.getStatus(), "rejected status");
+        Assertions.assertEquals("close", response.getHeaderString("Connection"), "Connection header");
+
+        filter.filter(inFlight.context, null);
+        draining.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(abandoned, VENDOR.counter("drain.abandoned").getCount(), "abandoned requests");
+        Assertions.assertEquals(drains + 1, VENDOR.timer("drain.duration").getCount(), "drains timed");
+    }
+
+    @Test
+    void testAbandonWhenBudgetRunsOut() {
+        Drain drain = new Drain(true, 1, peers, VENDOR);
+        long abandoned = VENDOR.counter("drain.abandoned").getCount();
+        long drains = VENDOR.timer("drain.duration").getCount();
+
+        Assertions.assertTrue(drain.enter(), "accepted before draining");
+        // the request outlives the budget of one second
+        drain.drain();
+        Assertions.assertEquals(HealthCheckResponse.State.DOWN, drain.call().getState(), "ready after draining");
+        Assertions.assertFalse(drain.enter(), "accepted after draining");
+        Assertions.assertEquals(abandoned + 1, VENDOR.counter("drain.abandoned").getCount(), "abandoned requests");
+        Assertions.assertEquals(drains + 1, VENDOR.timer("drain.duration").getCount(), "drains timed");
+        drain.exit();
+    }
+
+    private static void awaitDown(Drain drain) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (drain.call().getState() != HealthCheckResponse.State.DOWN) {
+            if (System.nanoTime() - deadline > 0) {
+                Assertions.fail("Drain did not start");
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    /**
+     * Request context keeping its properties and the response it was aborted with; other methods are not used by
+     * the filter.
+     */
+    private static final class RequestContext {
+        private final Map<String, Object> properties = new ConcurrentHashMap<>();
+        private final AtomicReference<Response> aborted = new AtomicReference<>();
+        private final ContainerRequestContext context = (ContainerRequestContext) Proxy.newProxyInstance(
+                ContainerRequestContext.class.getClassLoader(),
+                new Class<?>[] {ContainerRequestContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getProperty":
+                        return properties.get((String) args[0]);
+                    case "setProperty":
+                        properties.put((String) args[0], args[1]);
+                        return null;
+                    case "removeProperty":
+                        properties.remove((String) args[0]);
+                        return null;
+                    case "abortWith":
+                        aborted.set((Response) args[0]);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
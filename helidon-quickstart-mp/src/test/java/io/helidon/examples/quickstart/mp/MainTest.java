@@ -16,6 +16,16 @@
 
 package io.helidon.examples.quickstart.mp;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
 import javax.enterprise.inject.se.SeContainer;
 import javax.enterprise.inject.spi.CDI;
 import javax.json.JsonObject;
@@ -27,6 +37,9 @@ import javax.ws.rs.core.Response;
 
 import io.helidon.microprofile.server.Server;
 
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -34,9 +47,17 @@ import org.junit.jupiter.api.Test;
 
 class MainTest {
     private static Server server;
+    private static HttpServer peer;
 
     @BeforeAll
     public static void startTheServer() throws Exception {
+        // outbound calls go to a peer that only accepts requests signed by "helidon-mp"
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext("/greet/frames", MainTest::securedFrames);
+        peer.start();
+        System.setProperty("app.outbound.peers", "http://localhost:" + peer.getAddress().getPort() + "/greet");
+        System.setProperty("app.outbound.protocol", "binary");
+
         server = Main.startServer();
     }
 
@@ -83,12 +104,180 @@ class MainTest {
                 .request()
                 .get();
         Assertions.assertEquals(503, r.getStatus(), "GET health status code. Should fail.");
+
+        r = client
+                .target(getConnectionString("/health/ready"))
+                .request()
+                .get();
+        Assertions.assertEquals(200, r.getStatus(), "GET readiness status code");
+    }
+
+    @Test
+    void testBulkImport() {
+
+        Client client = ClientBuilder.newClient();
+
+        Response r = client
+                .target(getConnectionString("/greet/greeting/bulk"))
+                .request()
+                .put(Entity.entity("{\"name\" : \"Tom\", \"greeting\" : \"Ahoy\"}\n"
+                                           + "{\"locale\" : \"cs\", \"greeting\" : \"Ahoj\"}\n",
+                                   "application/x-ndjson"));
+        Assertions.assertEquals(200, r.getStatus(), "PUT bulk status code");
+        Assertions.assertEquals(2, r.readEntity(JsonObject.class).getInt("imported"), "imported count");
+
+        JsonObject jsonObject = client
+                .target(getConnectionString("/greet/Tom"))
+                .request()
+                .get(JsonObject.class);
+        Assertions.assertEquals("Ahoy Tom!", jsonObject.getString("message"),
+                                "name override message");
+
+        jsonObject = client
+                .target(getConnectionString("/greet/Petr"))
+                .request()
+                .header("Accept-Language", "cs;q=0.9")
+                .get(JsonObject.class);
+        Assertions.assertEquals("Ahoj Petr!", jsonObject.getString("message"),
+                                "locale override message");
+
+        r = client
+                .target(getConnectionString("/greet/greeting/bulk"))
+                .request()
+                .put(Entity.entity("{\"name\" : \"Tom\"}\n", "application/x-ndjson"));
+        Assertions.assertEquals(400, r.getStatus(), "PUT bulk status code - missing greeting");
+    }
+
+    @Test
+    void testLocaleGreeting() {
+
+        Client client = ClientBuilder.newClient();
+
+        Response r = client
+                .target(getConnectionString("/greet/greeting"))
+                .request()
+                .put(Entity.entity("{\"locale\" : \"sk\", \"greeting\" : \"Ahojte\"}", MediaType.APPLICATION_JSON));
+        Assertions.assertEquals(204, r.getStatus(), "PUT locale status code");
+
+        JsonObject jsonObject = client
+                .target(getConnectionString("/greet/Jana"))
+                .request()
+                .header("Accept-Language", "fr;q=0.5, sk-SK")
+                .get(JsonObject.class);
+        Assertions.assertEquals("Ahojte Jana!", jsonObject.getString("message"),
+                                "locale fallback message");
+
+        jsonObject = client
+                .target(getConnectionString("/greet"))
+                .request()
+                .header("Accept-Language", "SK-sk")
+                .get(JsonObject.class);
+        Assertions.assertEquals("Ahojte World!", jsonObject.getString("message"),
+                                "default locale message");
+
+        r = client
+                .target(getConnectionString("/greet/greeting"))
+                .request()
+                .put(Entity.entity("{\"locale\" : \" \", \"greeting\" : \"Ahojte\"}", MediaType.APPLICATION_JSON));
+        Assertions.assertEquals(400, r.getStatus(), "PUT locale status code - invalid locale");
+    }
+
+    @Test
+    void testGreetingTemplate() {
+
+        Client client = ClientBuilder.newClient();
+
+        Response r = client
+                .target(getConnectionString("/greet/greeting/bulk"))
+                .request()
+                .put(Entity.entity("{\"name\" : \"Ann\", \"greeting\" : \"Welcome back, {name} ({header:X-Client})\"}\n",
+                                   "application/x-ndjson"));
+        Assertions.assertEquals(200, r.getStatus(), "PUT bulk status code");
+
+        JsonObject jsonObject = client
+                .target(getConnectionString("/greet/Ann"))
+                .request()
+                .header("X-Client", "junit")
+                .get(JsonObject.class);
+        Assertions.assertEquals("Welcome back, Ann (junit)", jsonObject.getString("message"),
+                                "template message");
+    }
+
+    @Test
+    void testFrames() {
+
+        Client client = ClientBuilder.newClient();
+
+        byte[] body = client
+                .target(getConnectionString("/greet/frames"))
+                .request(GreetFrames.MEDIA_TYPE)
+                .post(Entity.entity(GreetFrames.encode("Joe", "Jose"), GreetFrames.MEDIA_TYPE), byte[].class);
+        List<String> messages = GreetFrames.decode(body);
+        Assertions.assertEquals(2, messages.size(), "frame count");
+        Assertions.assertTrue(messages.get(0).endsWith(" Joe!"), "Joe message");
+        Assertions.assertTrue(messages.get(1).endsWith(" Jose!"), "Jose message");
+
+        Response r = client
+                .target(getConnectionString("/greet/frames"))
+                .request()
+                .post(Entity.entity(new byte[] {5, 'J', 'o'}, GreetFrames.MEDIA_TYPE));
+        Assertions.assertEquals(400, r.getStatus(), "POST frames status code - incomplete frame");
+    }
+
+    @Test
+    void testBinaryOutbound() {
+
+        Client client = ClientBuilder.newClient();
+
+        String credentials = Base64.getEncoder().encodeToString("jill:password".getBytes(StandardCharsets.UTF_8));
+        JsonObject jsonObject = client
+                .target(getConnectionString("/greet/outbound"))
+                .request()
+                .header("Authorization", "Basic " + credentials)
+                .get(JsonObject.class);
+        Assertions.assertEquals("Peer greets jill", jsonObject.getString("message"),
+                                "binary outbound message from a secured peer");
     }
 
     @AfterAll
     static void destroyClass() {
         CDI<Object> current = CDI.current();
         ((SeContainer) current).close();
+        peer.stop(0);
+        System.clearProperty("app.outbound.peers");
+        System.clearProperty("app.outbound.protocol");
+    }
+
+    private static void securedFrames(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        Headers headers = exchange.getRequestHeaders();
+        String signature = headers.getFirst("Signature");
+        byte[] response = null;
+        if (null != signature) {
+            Map<String, String> parameters = HmacSignatures.parseSignatureHeader(signature);
+            List<String> signed = Arrays.asList(parameters.getOrDefault("headers", "").split(" "));
+            String signingString = HmacSignatures.signingString(signed, header -> HmacSignatures.REQUEST_TARGET.equals(header)
+                    ? HmacSignatures.requestTarget(exchange.getRequestMethod(), exchange.getRequestURI().getPath())
+                    : headers.getFirst(header));
+            if ("helidon-mp".equals(parameters.get("keyId"))
+                    && null != signingString
+                    && HmacSignatures.create("badIdeaClearTextPassword!").verify(signingString, parameters.get("signature"))) {
+                response = GreetFrames.encode("Peer greets " + GreetFrames.decode(body).get(0));
+            }
+        }
+        if (null == response) {
+            exchange.sendResponseHeaders(401, -1);
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", GreetFrames.MEDIA_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+        exchange.close();
     }
 
     private String getConnectionString(String path) {
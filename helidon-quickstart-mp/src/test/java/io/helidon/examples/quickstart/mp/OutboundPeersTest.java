@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.helidon.examples.quickstart.mp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load balancing and hedging of {@link OutboundPeers}; the requests are answered by the tests, not by real peers.
+ */
+class OutboundPeersTest {
+    private static final List<String> PEERS = List.of("http://a.example/greet",
+                                                      "http://b.example/greet",
+                                                      "http://c.example/greet");
+    private static final ToIntFunction<String> SIZE = GreetFrames::utf8Length;
+
+    private static MetricRegistry registry;
+    private static BlockingExecutor executor;
+
+    @BeforeAll
+    static void createExecutor() {
+        registry = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.APPLICATION);
+        executor = new BlockingExecutor(BlockingExecutor.MODE_PLATFORM,
+                                        8,
+                                        100,
+                                        false,
+                                        8,
+                                        5,
+                                        RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+    }
+
+    @AfterAll
+    static void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testLeastOutstanding() throws Exception {
+        OutboundPeers peers = peers(PEERS, OutboundPeers.BALANCER_LEAST_OUTSTANDING);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, Integer> called = new ConcurrentHashMap<>();
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(peers.call(target -> {
+                called.merge(target.getUri().getHost(), 1, Integer::sum);
+                await(release);
+                return "done";
+            }, SIZE).toCompletableFuture());
+        }
+        // counted from submission, so each request went to another peer, whether it started running or not
+        Assertions.assertEquals(3, peers.outstanding(), "outstanding");
+
+        release.countDown();
+        for (CompletableFuture<String> call : calls) {
+            Assertions.assertEquals("done", call.get(5, TimeUnit.SECONDS), "response");
+        }
+        Assertions.assertEquals(Map.of("a.example", 1, "b.example", 1, "c.example", 1), called, "peers called");
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    @Test
+    void testPowerOfTwoChoices() throws Exception {
+        OutboundPeers peers = peers(PEERS, OutboundPeers.BALANCER_P2C);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> busy = peers.call(target -> {
+            await(release);
+            return target.getUri().getHost();
+        }, SIZE).toCompletableFuture();
+
+        // each choice includes an idle peer, so the busy one is never chosen
+        Map<String, Integer> called = new ConcurrentHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            peers.call(target -> {
+                called.merge(target.getUri().getHost(), 1, Integer::sum);
+                return "done";
+            }, SIZE).toCompletableFuture()
+                    .get(5, TimeUnit.SECONDS);
+        }
+        release.countDown();
+        String busyPeer = busy.get(5, TimeUnit.SECONDS);
+
+        Assertions.assertNull(called.get(busyPeer), "busy peer called");
+        Assertions.assertEquals(2, called.size(), "idle peers called");
+    }
+
+    @Test
+    void testHedgeFiresAndWins() throws Exception {
+        OutboundPeers peers = peers(PEERS.subList(0, 2), OutboundPeers.BALANCER_P2C, true);
+        long fired = registry.counter("outbound.hedge.fired").getCount();
+        long wins = registry.counter("outbound.hedge.wins").getCount();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        List<String> called = new CopyOnWriteArrayList<>();
+
+        String message = peers.call(target -> {
+            called.add(target.getUri().getHost());
+            if (requests.incrementAndGet() == 1) {
+                await(release);
+                return "primary";
+            }
+            return "backup";
+        }, SIZE).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("backup", message, "response");
+        Assertions.assertEquals(2, called.size(), "requests");
+        Assertions.assertNotEquals(called.get(0), called.get(1), "backup request sent to the other peer");
+        Assertions.assertEquals(fired + 1, registry.counter("outbound.hedge.fired").getCount(), "hedges fired");
+        Assertions.assertEquals(wins + 1, registry.counter("outbound.hedge.wins").getCount(), "hedge wins");
+
+        // the slow request is not interrupted, it completes on its own
+        release.countDown();
+        awaitOutstanding(peers);
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    @Test
+    void testHedgeNotQueuedBehindPrimary() throws Exception {
+        BlockingExecutor single = new BlockingExecutor(BlockingExecutor.MODE_PLATFORM,
+                                                       1,
+                                                       100,
+                                                       false,
+                                                       1,
+                                                       5,
+                                                       RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+        try {
+            OutboundPeers peers = peers(PEERS.subList(0, 2), OutboundPeers.BALANCER_P2C, true, single);
+            long wins = registry.counter("outbound.hedge.wins").getCount();
+            // the only blocking thread is busy, so the primary request waits in the queue
+            CountDownLatch release = new CountDownLatch(1);
+            single.submit(() -> await(release));
+
+            String message = peers.call(target -> "answered", SIZE).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals("answered", message, "response");
+            Assertions.assertEquals(wins + 1, registry.counter("outbound.hedge.wins").getCount(), "hedge wins");
+
+            release.countDown();
+            awaitOutstanding(peers);
+            Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void testFailedRequestRetried() throws Exception {
+        OutboundPeers peers = peers(PEERS.subList(0, 2), OutboundPeers.BALANCER_P2C, true);
+        AtomicInteger requests = new AtomicInteger();
+        String message = peers.call(target -> {
+            if (requests.incrementAndGet() == 1) {
+                throw new IllegalStateException("refused");
+            }
+            return "retry";
+        }, SIZE).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("retry", message, "response");
+        Assertions.assertEquals(2, requests.get(), "requests");
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    private static OutboundPeers peers(List<String> uris, String balancer) {
+        return peers(uris, balancer, false);
+    }
+
+    private static OutboundPeers peers(List<String> uris, String balancer, boolean hedging) {
+        return peers(uris, balancer, hedging, executor);
+    }
+
+    private static OutboundPeers peers(List<String> uris, String balancer, boolean hedging, BlockingExecutor executor) {
+        return new OutboundPeers(uris,
+                                 balancer,
+                                 OutboundPeers.PROTOCOL_JSON,
+                                 hedging,
+                                 0.95,
+                                 5,
+                                 2,
+                                 5000,
+                                 executor,
+                                 registry);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitOutstanding(OutboundPeers peers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (peers.outstanding() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Asynchronous console handler. Logging threads only put records into a bounded lock-free ring buffer;
+ * a single writer thread formats them and writes them to {@code System.err} in batches.
+ * <p>
+ * Configured through {@code logging.properties} (all properties are prefixed with the class name):
+ * <ul>
+ *     <li>{@code level} - handler level, defaults to {@code INFO}</li>
+ *     <li>{@code formatter} - formatter class, defaults to {@link SimpleFormatter};
+ *     {@code !thread!} in the formatted message is replaced with the name of the logging thread</li>
+ *     <li>{@code capacity} - ring buffer size, rounded up to a power of two, defaults to {@code 8192}</li>
+ *     <li>{@code batch-size} - maximal number of records written at once, defaults to {@code 256}</li>
+ *     <li>{@code overflow} - what to do when the buffer fills up: {@code drop} (default), {@code sample}
+ *     (once half full, keep only one in {@code sample-rate} records below {@code WARNING}),
+ *     or {@code block} (wait for space)</li>
+ *     <li>{@code sample-rate} - see {@code overflow}, defaults to {@code 10}</li>
+ * </ul>
+ * As records are formatted on the writer thread, the source class and method are not inferred from the stack;
+ * the formatter falls back to the logger name.
+ */
+public final class AsyncLogHandler extends Handler {
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicLong WRITTEN = new AtomicLong();
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    enum Overflow {
+        DROP,
+        SAMPLE,
+        BLOCK
+    }
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicReferenceArray<Entry> slots;
+    private final int capacity;
+    private final int mask;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final int sampleRate;
+    private final Writer out;
+    private final Thread writer;
+
+    // head and writerParked are only modified by the writer thread
+    private volatile long head;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+
+    /**
+     * Create a new handler configured from the {@link LogManager} properties.
+     */
+    public AsyncLogHandler() {
+        this(Integer.parseInt(property("capacity", "8192")),
+             Integer.parseInt(property("batch-size", "256")),
+             Overflow.valueOf(property("overflow", "drop").toUpperCase(Locale.ROOT)),
+             Integer.parseInt(property("sample-rate", "10")),
+             new OutputStreamWriter(System.err, charset(property("encoding", null))));
+
+        setLevel(Level.parse(property("level", "INFO")));
+        setFormatter(formatter(property("formatter", SimpleFormatter.class.getName())));
+        String encoding = property("encoding", null);
+        if (null != encoding) {
+            try {
+                setEncoding(encoding);
+            } catch (UnsupportedEncodingException e) {
+                reportError("Unsupported encoding " + encoding, e, ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Create a new handler writing to the given output, with the default level and formatter of a {@link Handler}.
+     *
+     * @param capacity ring buffer size, rounded up to a power of two
+     * @param batchSize maximal number of records written at once
+     * @param overflow what to do when the buffer fills up
+     * @param sampleRate one in how many records below {@code WARNING} is kept by {@link Overflow#SAMPLE}
+     * @param out output of the formatted records
+     */
+    AsyncLogHandler(int capacity, int batchSize, Overflow overflow, int sampleRate, Writer out) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.out = out;
+
+        this.writer = new Thread(this::writeLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Register gauges with the number of written and dropped records.
+     *
+     * @param registry registry to register the gauges with
+     */
+    static void registerMetrics(MetricRegistry registry) {
+        registry.register("logging.async.written", (Gauge<Long>) WRITTEN::get);
+        registry.register("logging.async.dropped", (Gauge<Long>) DROPPED::get);
+    }
+
+    /**
+     * Number of records dropped by all handlers, as registered by {@link #registerMetrics(MetricRegistry)}.
+     *
+     * @return dropped record count
+     */
+    static long dropped() {
+        return DROPPED.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) {
+            return;
+        }
+        Entry entry = new Entry(record, Thread.currentThread().getName());
+
+        while (true) {
+            long claim = tail.get();
+            long used = claim - head;
+            if (used >= capacity) {
+                if (overflow != Overflow.BLOCK || !running) {
+                    DROPPED.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                continue;
+            }
+            if (overflow == Overflow.SAMPLE
+                    && used >= (capacity >> 1)
+                    && record.getLevel().intValue() < Level.WARNING.intValue()
+                    && sampled.incrementAndGet() % sampleRate != 0) {
+                DROPPED.incrementAndGet();
+                return;
+            }
+            if (tail.compareAndSet(claim, claim + 1)) {
+                slots.set((int) (claim & mask), entry);
+                if (writerParked) {
+                    LockSupport.unpark(writer);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        // the writer flushes after each batch
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(batchSize * 128);
+        while (true) {
+            int count = 0;
+            while (count < batchSize) {
+                long position = head;
+                int index = (int) (position & mask);
+                Entry entry = slots.get(index);
+                if (null == entry) {
+                    break;
+                }
+                slots.set(index, null);
+                head = position + 1;
+                format(batch, entry);
+                count++;
+            }
+
+            if (count > 0) {
+                write(batch, count);
+                continue;
+            }
+            if (!running && tail.get() == head) {
+                return;
+            }
+
+            writerParked = true;
+            if (null == slots.get((int) (head & mask)) && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            writerParked = false;
+        }
+    }
+
+    private void format(StringBuilder batch, Entry entry) {
+        try {
+            String message = getFormatter().format(entry.record);
+            int thread = message.indexOf("!thread!");
+            if (thread < 0) {
+                batch.append(message);
+            } else {
+                batch.append(message, 0, thread)
+                        .append(entry.threadName)
+                        .append(message, thread + 8, message.length());
+            }
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    private void write(StringBuilder batch, int count) {
+        try {
+            out.append(batch);
+            out.flush();
+            WRITTEN.addAndGet(count);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+        batch.setLength(0);
+    }
+
+    private static String property(String name, String defaultValue) {
+        String value = LogManager.getLogManager().getProperty(AsyncLogHandler.class.getName() + "." + name);
+        return (null == value) ? defaultValue : value.trim();
+    }
+
+    // an unsupported encoding is reported by setEncoding
+    private static Charset charset(String encoding) {
+        try {
+            return (null == encoding) ? Charset.defaultCharset() : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    private Formatter formatter(String className) {
+        try {
+            return (Formatter) ClassLoader.getSystemClassLoader()
+                    .loadClass(className)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            reportError("Failed to create formatter " + className, e, ErrorManager.GENERIC_FAILURE);
+            return new SimpleFormatter();
+        }
+    }
+
+    private static final class Entry {
+        private final LogRecord record;
+        private final String threadName;
+
+        private Entry(LogRecord record, String threadName) {
+            this.record = record;
+            this.threadName = threadName;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import io.helidon.config.Config;
+
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Sizes the server and application thread pools from the cgroup v2 CPU and memory limits of the container.
+ * <p>
+ * Enabled with {@code app.sizing.mode} set to {@code auto} (the default, {@code static}, keeps the configured sizes).
+ * The computed sizes are layered over the configuration as {@code server.workers} (I/O threads) and
+ * {@code app.execution.platform-threads} (blocking executor), and the keep-alive connection pool of the
+ * outbound client ({@code http.maxConnections}) is sized to match the blocking executor.
+ * <p>
+ * Without a cgroup v2 limit, the number of available processors and no memory limit are assumed.
+ */
+final class AutoSizing {
+    private static final Logger LOGGER = Logger.getLogger(AutoSizing.class.getName());
+
+    static final String MODE_STATIC = "static";
+    static final String MODE_AUTO = "auto";
+
+    private static final Path CGROUP_ROOT = Paths.get("/sys/fs/cgroup");
+    // stack reserved by each platform thread; at most an eighth of the memory limit is spent on stacks
+    private static final long THREAD_STACK_BYTES = 1024 * 1024;
+    private static final int BLOCKING_THREADS_PER_CPU = 8;
+    private static final int MIN_BLOCKING_THREADS = 4;
+
+    private final boolean enabled;
+    private final double cpuLimit;
+    private final long memoryLimit;
+    private final int cpus;
+    private final int ioThreads;
+    private final int blockingThreads;
+
+    private AutoSizing(boolean enabled, double cpuLimit, long memoryLimit) {
+        this.enabled = enabled;
+        this.cpuLimit = cpuLimit;
+        this.memoryLimit = memoryLimit;
+
+        int available = Runtime.getRuntime().availableProcessors();
+        this.cpus = (cpuLimit > 0) ? Math.max(1, Math.min(available, (int) Math.ceil(cpuLimit))) : available;
+        this.ioThreads = cpus;
+
+        int blocking = Math.max(MIN_BLOCKING_THREADS, cpus * BLOCKING_THREADS_PER_CPU);
+        if (memoryLimit > 0) {
+            blocking = (int) Math.max(MIN_BLOCKING_THREADS, Math.min(blocking, memoryLimit / 8 / THREAD_STACK_BYTES));
+        }
+        this.blockingThreads = blocking;
+    }
+
+    /**
+     * Detect the container limits and compute the pool sizes.
+     *
+     * @param config the {@code app.sizing} configuration node
+     * @return sizing, applied only if enabled
+     */
+    static AutoSizing create(Config config) {
+        return create(config, cgroupDirectory());
+    }
+
+    /**
+     * Compute the pool sizes from the limits in a cgroup directory.
+     *
+     * @param config the {@code app.sizing} configuration node
+     * @param cgroup cgroup v2 directory with the {@code cpu.max} and {@code memory.max} files
+     * @return sizing, applied only if enabled
+     */
+    static AutoSizing create(Config config, Path cgroup) {
+        boolean enabled = MODE_AUTO.equals(config.get("mode").asString().orElse(MODE_STATIC));
+        return new AutoSizing(enabled, readCpuLimit(cgroup.resolve("cpu.max")), readMemoryLimit(cgroup.resolve("memory.max")));
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Configuration values with the computed pool sizes, to be layered over the application configuration.
+     *
+     * @return configuration overrides, empty if not enabled
+     */
+    Map<String, String> overrides() {
+        Map<String, String> overrides = new HashMap<>();
+        if (enabled) {
+            overrides.put("server.workers", String.valueOf(ioThreads));
+            overrides.put("app.execution.platform-threads", String.valueOf(blockingThreads));
+        }
+        return overrides;
+    }
+
+    /**
+     * Size the outbound connection pool and export the chosen sizes, if enabled.
+     *
+     * @param registry vendor registry to export the sizes to
+     */
+    void apply(MetricRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        // the JDK keep-alive cache reads the property once, so this must happen before the first outbound call
+        if (null == System.getProperty("http.maxConnections")) {
+            System.setProperty("http.maxConnections", String.valueOf(blockingThreads));
+        }
+        LOGGER.info("Sized for " + cpus + " CPUs (cgroup limit " + ((cpuLimit > 0) ? cpuLimit : "none")
+                            + ", memory limit " + ((memoryLimit > 0) ? memoryLimit : "none") + "): "
+                            + ioThreads + " I/O threads, " + blockingThreads + " blocking threads");
+
+        registry.register("sizing.cpu.limit", (Gauge<Double>) () -> cpuLimit);
+        registry.register("sizing.memory.limit", (Gauge<Long>) () -> memoryLimit);
+        registry.register("sizing.cpus", (Gauge<Integer>) () -> cpus);
+        registry.register("sizing.io.threads", (Gauge<Integer>) () -> ioThreads);
+        registry.register("sizing.blocking.threads", (Gauge<Integer>) () -> blockingThreads);
+        registry.register("sizing.outbound.connections",
+                          (Gauge<Integer>) () -> Integer.getInteger("http.maxConnections", blockingThreads));
+    }
+
+    // the process' own cgroup from /proc/self/cgroup ("0::<path>" on cgroup v2), falling back to the root
+    private static Path cgroupDirectory() {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get("/proc/self/cgroup"));
+            for (String line : lines) {
+                if (line.startsWith("0::")) {
+                    Path directory = CGROUP_ROOT.resolve(line.substring(3).replaceFirst("^/+", ""));
+                    if (Files.isReadable(directory.resolve("cpu.max"))) {
+                        return directory;
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // not on Linux
+        }
+        return CGROUP_ROOT;
+    }
+
+    // cpu.max is "<quota> <period>" in microseconds, or "max <period>" without a limit
+    static double readCpuLimit(Path cpuMax) {
+        String[] values = read(cpuMax).split("\\s+");
+        if (values.length != 2 || "max".equals(values[0])) {
+            return -1;
+        }
+        try {
+            return Double.parseDouble(values[0]) / Double.parseDouble(values[1]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // memory.max is the limit in bytes, or "max" without a limit
+    static long readMemoryLimit(Path memoryMax) {
+        try {
+            return Long.parseLong(read(memoryMax));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return new String(Files.readAllBytes(file)).trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.helidon.common.http.Http;
+import io.helidon.config.Config;
+import io.helidon.metrics.RegistryFactory;
+import io.helidon.webserver.Handler;
+import io.helidon.webserver.ServerRequest;
+import io.helidon.webserver.ServerResponse;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Executor for blocking work done by handlers (such as synchronous outbound calls).
+ * <p>
+ * Two modes are supported through {@code app.execution.mode}:
+ * <ul>
+ *     <li>{@code platform} - a bounded pool of platform threads with a bounded queue ({@code platform-threads},
+ *     {@code queue-size}), the default</li>
+ *     <li>{@code virtual} - a new virtual thread per task; requires a JVM with virtual thread support,
+ *     falls back to {@code platform} otherwise</li>
+ * </ul>
+ * With {@code app.execution.adaptive.enabled}, the platform pool grows (up to {@code adaptive.max-threads}) while
+ * the average queueing delay exceeds {@code adaptive.target-queue-millis}, and shrinks back to
+ * {@code platform-threads} once tasks no longer queue.
+ * <p>
+ * With {@code app.execution.dispatch-handlers} (the default in {@code virtual} mode), services run their handlers
+ * on this executor through {@link #handler()}, so the handlers may block. Virtual threads pinned to their carrier
+ * (while blocking in a {@code synchronized} block or a native frame) are reported by {@link JvmTelemetry}.
+ */
+final class BlockingExecutor {
+    private static final Logger LOGGER = Logger.getLogger(BlockingExecutor.class.getName());
+
+    static final String MODE_PLATFORM = "platform";
+    static final String MODE_VIRTUAL = "virtual";
+
+    private static final ScheduledExecutorService RESIZER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "blocking-resize");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService executor;
+    private final String mode;
+    private final boolean dispatchHandlers;
+    private final AtomicInteger active = new AtomicInteger();
+    // queueing delay since the last resize
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final Counter submitted;
+    private final Timer queueTimer;
+
+    private volatile ScheduledFuture<?> resizing;
+
+    private BlockingExecutor(String mode, ExecutorService executor, boolean dispatchHandlers) {
+        this.mode = mode;
+        this.executor = executor;
+        this.dispatchHandlers = dispatchHandlers;
+
+        MetricRegistry vendor = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR);
+        this.submitted = vendor.counter("execution.tasks.submitted");
+        this.queueTimer = vendor.timer("execution.tasks.queue.timer");
+        register(vendor, "execution.tasks.active", (Gauge<Integer>) active::get);
+        register(vendor, "execution.virtual", (Gauge<Integer>) () -> MODE_VIRTUAL.equals(this.mode) ? 1 : 0);
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            register(vendor, "execution.pool.size", (Gauge<Integer>) pool::getCorePoolSize);
+            register(vendor, "execution.queue.size", (Gauge<Integer>) () -> pool.getQueue().size());
+        }
+    }
+
+    /**
+     * Create a new executor from the {@code app.execution} configuration node.
+     *
+     * @param config execution configuration
+     * @return a new blocking executor
+     */
+    static BlockingExecutor create(Config config) {
+        String mode = config.get("mode").asString().orElse(MODE_PLATFORM);
+        int threads = config.get("platform-threads").asInt().orElse(32);
+        int queueSize = config.get("queue-size").asInt().orElse(1000);
+        boolean dispatchHandlers = config.get("dispatch-handlers").asBoolean().orElse(MODE_VIRTUAL.equals(mode));
+
+        if (MODE_VIRTUAL.equals(mode)) {
+            ExecutorService virtual = virtualExecutor();
+            if (null != virtual) {
+                LOGGER.info("Blocking handlers run on virtual threads");
+                return new BlockingExecutor(MODE_VIRTUAL, virtual, dispatchHandlers);
+            }
+            LOGGER.warning("Virtual threads are not supported by this JVM, using platform threads");
+        }
+
+        BlockingExecutor executor = new BlockingExecutor(MODE_PLATFORM,
+                                                         platformExecutor(threads, queueSize),
+                                                         dispatchHandlers);
+        if (config.get("adaptive.enabled").asBoolean().orElse(false)) {
+            executor.adapt(threads,
+                           Math.max(threads, config.get("adaptive.max-threads").asInt().orElse(threads * 4)),
+                           TimeUnit.MILLISECONDS.toNanos(config.get("adaptive.target-queue-millis").asLong().orElse(5L)));
+        }
+        return executor;
+    }
+
+    /**
+     * Handler that continues the routing on this executor, so the handlers after it may block. Registered first
+     * by services whose handlers block; a pass-through unless {@code dispatch-handlers} is enabled.
+     *
+     * @return dispatching handler
+     */
+    Handler handler() {
+        return this::dispatch;
+    }
+
+    /**
+     * Run a blocking task on this executor.
+     *
+     * @param task blocking work to execute
+     * @param <T> type of the result
+     * @return completion stage of the result, completed exceptionally if the task failed or was rejected
+     */
+    <T> CompletionStage<T> supply(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable throwable) {
+                    result.completeExceptionally(throwable);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    String mode() {
+        return mode;
+    }
+
+    boolean virtual() {
+        return MODE_VIRTUAL.equals(mode);
+    }
+
+    void shutdown() {
+        ScheduledFuture<?> resizing = this.resizing;
+        if (null != resizing) {
+            resizing.cancel(false);
+        }
+        executor.shutdown();
+    }
+
+    private void dispatch(ServerRequest request, ServerResponse response) {
+        if (!dispatchHandlers) {
+            request.next();
+            return;
+        }
+        try {
+            execute(request::next);
+        } catch (RejectedExecutionException e) {
+            // the queue is full, shed the request rather than let it wait
+            response.status(Http.Status.SERVICE_UNAVAILABLE_503).send();
+        }
+    }
+
+    private void execute(Runnable task) {
+        submitted.inc();
+        long queuedAt = System.nanoTime();
+        executor.execute(() -> {
+            long queued = System.nanoTime() - queuedAt;
+            queueTimer.update(queued, TimeUnit.NANOSECONDS);
+            queueNanos.add(queued);
+            dequeued.increment();
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    private void adapt(int minThreads, int maxThreads, long targetNanos) {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        LOGGER.info("Blocking pool adapts between " + minThreads + " and " + maxThreads + " threads");
+        resizing = RESIZER.scheduleWithFixedDelay(() -> resize(pool, minThreads, maxThreads, targetNanos),
+                                                  1,
+                                                  1,
+                                                  TimeUnit.SECONDS);
+    }
+
+    private void resize(ThreadPoolExecutor pool, int minThreads, int maxThreads, long targetNanos) {
+        long total = queueNanos.sumThenReset();
+        long count = dequeued.sumThenReset();
+        long delay = (count == 0) ? 0 : total / count;
+        int size = pool.getCorePoolSize();
+
+        // the maximum must never drop below the core size, hence the order of the setters
+        if (delay > targetNanos && size < maxThreads) {
+            int grown = Math.min(maxThreads, size + Math.max(1, size / 4));
+            pool.setMaximumPoolSize(grown);
+            pool.setCorePoolSize(grown);
+        } else if (delay < targetNanos / 4 && active.get() < size / 2 && size > minThreads) {
+            int shrunk = Math.max(minThreads, size - Math.max(1, size / 8));
+            pool.setCorePoolSize(shrunk);
+            pool.setMaximumPoolSize(shrunk);
+        }
+    }
+
+    // another instance (such as one created by a test) takes over the gauges instead of failing on the duplicate
+    private static <T extends Metric> void register(MetricRegistry registry, String name, T metric) {
+        registry.remove(name);
+        registry.register(name, metric);
+    }
+
+    private static ExecutorService platformExecutor(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "blocking-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                             threads,
+                                                             60,
+                                                             TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(queueSize),
+                                                             factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // looked up reflectively, as virtual threads are not part of the Java 11 API the application is built against
+    private static ExecutorService virtualExecutor() {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findStatic(Executors.class,
+                                "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class));
+            return (ExecutorService) handle.invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.helidon.config.Config;
+import io.helidon.security.AuthenticationResponse;
+import io.helidon.security.Principal;
+import io.helidon.security.ProviderRequest;
+import io.helidon.security.SecurityEnvironment;
+import io.helidon.security.Subject;
+import io.helidon.security.spi.AuthenticationProvider;
+import io.helidon.security.spi.SynchronousProvider;
+
+/**
+ * Inbound {@code http-signatures} authentication with pooled {@code Mac} instances and cached verification
+ * (see {@link HmacSignatures}).
+ * <p>
+ * Configured as the inbound part of the {@code http-signatures} provider, limited to {@code hmac-sha256} keys:
+ * <ul>
+ *     <li>{@code optional} - abstain instead of failing when a request is not signed</li>
+ *     <li>{@code clock-skew-seconds} - largest accepted difference between the signed {@code date} and the local
+ *     clock, defaults to {@code 300}</li>
+ *     <li>{@code sign-headers} - headers that must be signed, {@code always} for the given {@code method}
+ *     (or all methods)</li>
+ *     <li>{@code inbound.keys} - {@code key-id}, {@code principal-name}, {@code principal-type}
+ *     ({@code SERVICE} or {@code USER}) and {@code hmac.secret} of each accepted key</li>
+ * </ul>
+ */
+final class CachedSignatureProvider extends SynchronousProvider implements AuthenticationProvider {
+    static final String CONFIG_KEY = "cached-http-signatures";
+
+    private static final long DEFAULT_CLOCK_SKEW_SECONDS = 300;
+
+    private final boolean optional;
+    private final long clockSkewSeconds;
+    private final Map<String, List<String>> signHeaders;
+    private final Map<String, InboundKey> keys;
+
+    private CachedSignatureProvider(boolean optional,
+                                    long clockSkewSeconds,
+                                    Map<String, List<String>> signHeaders,
+                                    Map<String, InboundKey> keys) {
+        this.optional = optional;
+        this.clockSkewSeconds = clockSkewSeconds;
+        this.signHeaders = signHeaders;
+        this.keys = keys;
+    }
+
+    /**
+     * Create the provider from its configuration node.
+     *
+     * @param config provider configuration
+     * @return new provider
+     */
+    static CachedSignatureProvider create(Config config) {
+        // required headers by lower case method, "" for any method
+        Map<String, List<String>> signHeaders = new HashMap<>();
+        for (Config headers : config.get("sign-headers").asNodeList().orElse(Collections.emptyList())) {
+            signHeaders.put(headers.get("method").asString().orElse("").toLowerCase(Locale.ROOT),
+                            headers.get("always").asList(String.class).orElse(Collections.emptyList()));
+        }
+
+        Map<String, InboundKey> keys = new HashMap<>();
+        for (Config key : config.get("inbound.keys").asNodeList().orElse(Collections.emptyList())) {
+            String keyId = key.get("key-id").asString().get();
+            keys.put(keyId, new InboundKey(key.get("principal-name").asString().orElse(keyId),
+                                           "SERVICE".equals(key.get("principal-type").asString().orElse("SERVICE")),
+                                           HmacSignatures.create(key.get("hmac.secret").asString().get())));
+        }
+
+        return new CachedSignatureProvider(config.get("optional").asBoolean().orElse(false),
+                                           config.get("clock-skew-seconds").asLong().orElse(DEFAULT_CLOCK_SKEW_SECONDS),
+                                           signHeaders,
+                                           keys);
+    }
+
+    @Override
+    protected AuthenticationResponse syncAuthenticate(ProviderRequest request) {
+        SecurityEnvironment env = request.env();
+        Map<String, List<String>> headers = env.headers();
+
+        String signatureHeader = header(headers, "signature");
+        if (null == signatureHeader) {
+            return optional ? AuthenticationResponse.abstain() : AuthenticationResponse.failed("Request is not signed");
+        }
+        Map<String, String> signature = HmacSignatures.parseSignatureHeader(signatureHeader);
+
+        InboundKey key = keys.get(signature.get("keyId"));
+        if (null == key) {
+            return AuthenticationResponse.failed("Unknown signature key " + signature.get("keyId"));
+        }
+        if (!HmacSignatures.ALGORITHM.equals(signature.getOrDefault("algorithm", HmacSignatures.ALGORITHM))
+                || !signature.containsKey("signature")) {
+            return AuthenticationResponse.failed("Unsupported signature algorithm " + signature.get("algorithm"));
+        }
+
+        List<String> signed = Arrays.asList(signature.getOrDefault("headers", "date").split(" "));
+        String method = env.method().toLowerCase(Locale.ROOT);
+        if (!signed.containsAll(signHeaders.getOrDefault("", Collections.emptyList()))
+                || !signed.containsAll(signHeaders.getOrDefault(method, Collections.emptyList()))) {
+            return AuthenticationResponse.failed("Signature does not cover the required headers");
+        }
+        String date = header(headers, "date");
+        if (null == date || !HmacSignatures.recent(date, clockSkewSeconds)) {
+            return AuthenticationResponse.failed("Signature date is missing or not recent");
+        }
+
+        String requestTarget = HmacSignatures.requestTarget(env.method(), env.path().orElse("/"));
+        String signingString = HmacSignatures.signingString(signed, name -> HmacSignatures.REQUEST_TARGET.equals(name)
+                ? requestTarget
+                : header(headers, name));
+        if (null == signingString || !key.signatures.verify(signingString, signature.get("signature"))) {
+            return AuthenticationResponse.failed("Invalid signature");
+        }
+
+        return key.service
+                ? AuthenticationResponse.successService(key.subject)
+                : AuthenticationResponse.success(key.subject);
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    private static final class InboundKey {
+        private final Subject subject;
+        private final boolean service;
+        private final HmacSignatures signatures;
+
+        private InboundKey(String principalName, boolean service, HmacSignatures signatures) {
+            this.subject = Subject.builder().principal(Principal.create(principalName)).build();
+            this.service = service;
+            this.signatures = signatures;
+        }
+    }
+}
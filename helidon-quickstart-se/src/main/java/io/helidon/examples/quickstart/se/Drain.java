@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import io.helidon.common.http.Http;
+import io.helidon.config.Config;
+import io.helidon.metrics.RegistryFactory;
+import io.helidon.webserver.Routing;
+import io.helidon.webserver.ServerRequest;
+import io.helidon.webserver.ServerResponse;
+import io.helidon.webserver.Service;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Graceful drain on JVM shutdown ({@code SIGTERM}). Once draining, readiness reports {@code DOWN} and new requests
+ * are rejected with {@code 503} and {@code Connection: close}, until in-flight requests and outbound calls complete
+ * or the time budget expires. Called first by the shutdown hook of {@link Main}, before the server is shut down.
+ * <p>
+ * Configured from the {@code app.drain} node:
+ * <ul>
+ *     <li>{@code enabled} - whether to drain on shutdown, defaults to {@code true}</li>
+ *     <li>{@code budget-seconds} - longest time to wait for in-flight work, defaults to {@code 20}</li>
+ * </ul>
+ * Routes registered before this service (such as health and metrics) are neither tracked nor rejected.
+ * The drain duration and the number of abandoned requests are reported as vendor metrics.
+ */
+final class Drain implements Service, HealthCheck {
+    private static final Logger LOGGER = Logger.getLogger(Drain.class.getName());
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final LongAdder inFlight = new LongAdder();
+    private final boolean enabled;
+    private final Duration budget;
+    private final Timer duration;
+    private final Counter abandoned;
+
+    private volatile IntSupplier outbound = () -> 0;
+    private volatile boolean draining;
+
+    private Drain(boolean enabled, Duration budget) {
+        this.enabled = enabled;
+        this.budget = budget;
+
+        MetricRegistry vendor = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR);
+        this.duration = vendor.timer("drain.duration");
+        this.abandoned = vendor.counter("drain.abandoned");
+        // another instance (such as one created by a test) takes over the gauge instead of failing on the duplicate
+        vendor.remove("drain.in-flight");
+        vendor.register("drain.in-flight", (Gauge<Long>) inFlight::sum);
+    }
+
+    /**
+     * Create drain from the {@code app.drain} configuration node.
+     *
+     * @param config drain configuration
+     * @return new drain
+     */
+    static Drain create(Config config) {
+        return new Drain(config.get("enabled").asBoolean().orElse(true),
+                         Duration.ofSeconds(config.get("budget-seconds").asLong().orElse(20L)));
+    }
+
+    /**
+     * Also wait for outbound calls before shutting down.
+     *
+     * @param outstanding number of outbound calls in progress
+     */
+    void trackOutbound(IntSupplier outstanding) {
+        this.outbound = outstanding;
+    }
+
+
+    @Override
+    public void update(Routing.Rules rules) {
+        rules.any(this::track);
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("drain")
+                .state(!draining)
+                .withData("inFlight", inFlight.sum())
+                .build();
+    }
+
+    private void track(ServerRequest request, ServerResponse response) {
+        // counted before the check, so a request either sees the drain or is waited for
+        inFlight.increment();
+        if (draining) {
+            inFlight.decrement();
+            response.headers().add(Http.Header.CONNECTION, "close");
+            response.status(Http.Status.SERVICE_UNAVAILABLE_503).send();
+            return;
+        }
+        response.whenSent().whenComplete((sent, throwable) -> inFlight.decrement());
+        request.next();
+    }
+
+    /**
+     * Reject new requests and wait for the in-flight ones, if enabled.
+     */
+    void drain() {
+        if (!enabled) {
+            return;
+        }
+        draining = true;
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+        LOGGER.info("Draining " + inFlight.sum() + " requests, " + outbound.getAsInt() + " outbound calls");
+
+        while ((inFlight.sum() > 0 || outbound.getAsInt() > 0) && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long remaining = inFlight.sum();
+        duration.update(elapsed, TimeUnit.NANOSECONDS);
+        abandoned.inc(remaining);
+        LOGGER.info("Drained in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, " + remaining
+                            + " requests abandoned");
+    }
+}
@@ -16,9 +16,13 @@
 
 package io.helidon.examples.quickstart.se;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,9 +32,15 @@ import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.CompletionStageRxInvoker;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 
+import io.helidon.common.http.DataChunk;
 import io.helidon.common.http.Http;
+import io.helidon.common.http.MediaType;
+import io.helidon.common.reactive.Flow;
 import io.helidon.config.Config;
 import io.helidon.metrics.RegistryFactory;
 import io.helidon.webserver.Routing;
@@ -53,15 +63,32 @@ import org.eclipse.microprofile.metrics.Timer;
  * Change greeting
  * curl -X PUT -H "Content-Type: application/json" -d '{"greeting" : "Howdy"}' http://localhost:8080/greet/greeting
  *
+ * Change greeting for a locale, used for clients preferring it (or a more specific one) in Accept-Language
+ * curl -X PUT -H "Content-Type: application/json" -d '{"locale" : "de", "greeting" : "Hallo"}' http://localhost:8080/greet/greeting
+ *
+ * Change greeting to a template (see {@link GreetingTemplate})
+ * curl -X PUT -H "Content-Type: application/json" -d '{"greeting" : "Hi {name}, it is {time}"}' http://localhost:8080/greet/greeting
+ *
+ * Import per-name or per-locale greetings (one JSON object per line)
+ * curl -X PUT -H "Content-Type: application/x-ndjson" --data-binary @greetings.ndjson http://localhost:8080/greet/greeting/bulk
+ *
+ * Get greeting messages for several names in one call, using the internal binary framing (see {@link GreetFrames})
+ * printf '\x03Joe\x04Jose' | curl -X POST -H "Content-Type: application/x-greet-frames" --data-binary @- http://localhost:8080/greet/frames
+ *
  * The message is returned as a JSON object
  */
 
 public class GreetService implements Service {
 
     /**
-     * The config value for the key {@code greeting}.
+     * The config value for the key {@code greeting}, compiled to a template.
+     */
+    private final AtomicReference<GreetingTemplate> greeting = new AtomicReference<>();
+
+    /**
+     * Per-name and per-locale greetings, imported through {@code PUT /greet/greeting/bulk}.
      */
-    private final AtomicReference<String> greeting = new AtomicReference<>();
+    private final GreetingOverrides overrides = new GreetingOverrides();
 
     private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
 
@@ -70,20 +97,33 @@ public class GreetService implements Service {
     private static final Client JAX_RS_CLIENT = ClientBuilder.newClient();
 
     private final Timer defaultMessageTimer;
-    private final WebTarget webTarget;
+    private final BlockingExecutor executor;
+    private final OutboundPeers outboundPeers;
 
     GreetService(Config config) {
         Config greetingConfig = config.get("app.greeting");
 
         // initial value
-        greeting.set(greetingConfig.asString().orElse("Ciao"));
+        greeting.set(GreetingTemplate.compile(greetingConfig.asString().orElse("Ciao")));
 
-        greetingConfig.onChange((Consumer<Config>) cfg -> greeting.set(cfg.asString().orElse("Ciao")));
+        greetingConfig.onChange((Consumer<Config>) cfg -> updateGreeting(cfg.asString().orElse("Ciao"), "config"));
 
         RegistryFactory metricsRegistry = RegistryFactory.getInstance();
         MetricRegistry appRegistry = metricsRegistry.getRegistry(MetricRegistry.Type.APPLICATION);
         this.defaultMessageTimer = appRegistry.timer("greet.default.timer");
-        this.webTarget = JAX_RS_CLIENT.target("http://localhost:8081/greet");
+        this.executor = BlockingExecutor.create(config.get("app.execution"));
+        this.outboundPeers = OutboundPeers.create(config.get("app.outbound"),
+                                                  JAX_RS_CLIENT,
+                                                  "http://localhost:8081/greet");
+    }
+
+    /**
+     * Number of outbound calls in progress.
+     *
+     * @return outstanding calls to peers
+     */
+    int outstandingCalls() {
+        return outboundPeers.outstanding();
     }
 
     private static <T> T processErrors(Throwable ex, ServerRequest request, ServerResponse response) {
@@ -114,10 +154,13 @@ public class GreetService implements Service {
     @Override
     public void update(Routing.Rules rules) {
         rules
+                .any(executor.handler())
                 .get("/", this::getDefaultMessageHandler)
                 .get("/outbound", this::outbound)
                 .get("/{name}", this::getMessageHandler)
-                .put("/greeting", this::updateGreetingHandler);
+                .put("/greeting", this::updateGreetingHandler)
+                .put("/greeting/bulk", this::importGreetingsHandler)
+                .post("/frames", this::framesHandler);
 
     }
 
@@ -128,8 +171,13 @@ public class GreetService implements Service {
      */
     private void getDefaultMessageHandler(ServerRequest request,
                                           ServerResponse response) {
+        // warm-up requests are not timed, so they do not skew the application metrics
+        if (WarmUp.isWarmUp(request.headers().first(WarmUp.HEADER).orElse(null))) {
+            sendResponse(request, response, greetingFor(request, "World"), "World");
+            return;
+        }
         Timer.Context timerContext = defaultMessageTimer.time();
-        sendResponse(response, "World");
+        sendResponse(request, response, greetingFor(request, "World"), "World");
         response.whenSent()
                 .thenAccept(res -> timerContext.stop());
     }
@@ -142,24 +190,53 @@ public class GreetService implements Service {
     private void getMessageHandler(ServerRequest request,
                                    ServerResponse response) {
         String name = request.path().param("name");
-        sendResponse(response, name);
+        sendResponse(request, response, greetingFor(request, name), name);
     }
 
-    private void sendResponse(ServerResponse response, String name) {
-        String msg = String.format("%s %s!", greeting.get(), name);
+    private GreetingTemplate greetingFor(ServerRequest request, String name) {
+        GreetingTemplate override = overrides.forName(name);
+        if (null == override) {
+            override = request.headers()
+                    .first("Accept-Language")
+                    .map(overrides::forAcceptLanguage)
+                    .orElse(null);
+        }
+        return (null == override) ? greeting.get() : override;
+    }
+
+    private static Function<String, String> headers(ServerRequest request) {
+        return header -> request.headers().first(header).orElse(null);
+    }
+
+    private void sendResponse(ServerRequest request, ServerResponse response, GreetingTemplate template, String name) {
+        ResponseEvent event = new ResponseEvent();
+        event.begin();
+
+        String msg = template.render(name, headers(request));
 
         JsonObject returnObject = JSON.createObjectBuilder()
                 .add("message", msg)
                 .build();
+
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.payloadSize = GreetFrames.utf8Length(msg);
+            event.commit();
+        }
         response.send(returnObject);
     }
 
     private void outbound(ServerRequest request, ServerResponse response) {
-        // and reactive jersey client call
-        webTarget.request()
-                .rx()
-                .get(String.class)
-                .thenAccept(response::send)
+        CompletionStage<?> reply = outboundPeers.binary()
+                ? outboundPeers.call(target -> postFrames(target, ""), body -> body.length)
+                        .thenApply(body -> JSON.createObjectBuilder()
+                                .add("message", singleFrame(body))
+                                .build())
+                : outboundPeers.call(target -> invoke(target.request(),
+                                                      builder -> builder.get(String.class),
+                                                      rx -> rx.get(String.class)),
+                                     GreetFrames::utf8Length);
+        reply.thenAccept(response::send)
                 .exceptionally(throwable -> {
                     // process exception
                     response.status(Http.Status.INTERNAL_SERVER_ERROR_500);
@@ -168,6 +245,30 @@ public class GreetService implements Service {
                 });
     }
 
+    // one frame per POST, concurrent calls are not pipelined over a shared framed stream
+    private CompletionStage<byte[]> postFrames(WebTarget target, String name) {
+        Entity<byte[]> entity = Entity.entity(GreetFrames.encode(name), GreetFrames.MEDIA_TYPE);
+        return invoke(target.path("frames").request(GreetFrames.MEDIA_TYPE),
+                      builder -> builder.post(entity, byte[].class),
+                      rx -> rx.post(entity, byte[].class));
+    }
+
+    private static String singleFrame(byte[] body) {
+        List<String> messages = GreetFrames.decode(body);
+        if (messages.size() != 1) {
+            throw new IllegalStateException("Expected a single frame, got " + messages.size());
+        }
+        return messages.get(0);
+    }
+
+    // a blocking call on a virtual thread in the "virtual" execution mode, a non-blocking jersey rx() call otherwise,
+    // so outbound concurrency is never capped by the platform pool
+    private <T> CompletionStage<T> invoke(Invocation.Builder request,
+                                          Function<Invocation.Builder, T> blocking,
+                                          Function<CompletionStageRxInvoker, CompletionStage<T>> reactive) {
+        return executor.virtual() ? executor.supply(() -> blocking.apply(request)) : reactive.apply(request.rx());
+    }
+
     private void updateGreetingFromJson(JsonObject jo, ServerResponse response) {
 
         if (!jo.containsKey("greeting")) {
@@ -179,12 +280,49 @@ public class GreetService implements Service {
             return;
         }
 
-        greeting.set(jo.getString("greeting"));
+        String newGreeting = jo.getString("greeting");
+        String locale = jo.getString("locale", null);
+        if (null == locale) {
+            updateGreeting(newGreeting, "put");
+        } else if (locale.trim().isEmpty()) {
+            JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                    .add("error", "Invalid locale")
+                    .build();
+            response.status(Http.Status.BAD_REQUEST_400)
+                    .send(jsonErrorObject);
+            return;
+        } else {
+            updateLocaleGreeting(locale, newGreeting);
+        }
         response.status(Http.Status.NO_CONTENT_204).send();
     }
 
+    private void updateGreeting(String newGreeting, String source) {
+        GreetingUpdateEvent event = new GreetingUpdateEvent();
+        event.begin();
+        greeting.set(GreetingTemplate.compile(newGreeting));
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.entries = 1;
+            event.payloadSize = GreetFrames.utf8Length(newGreeting);
+            event.commit();
+        }
+    }
+
+    private void updateLocaleGreeting(String locale, String newGreeting) {
+        GreetingUpdateEvent event = new GreetingUpdateEvent();
+        event.begin();
+        overrides.putLocale(locale, newGreeting);
+        if (event.shouldCommit()) {
+            event.source = "put-locale";
+            event.entries = 1;
+            event.payloadSize = GreetFrames.utf8Length(newGreeting);
+            event.commit();
+        }
+    }
+
     /**
-     * Set the greeting to use in future messages.
+     * Set the greeting to use in future messages, or with a {@code locale}, the greeting for that locale.
      * @param request the server request
      * @param response the server response
      */
@@ -195,4 +333,204 @@ public class GreetService implements Service {
                 .exceptionally(ex -> processErrors(ex, request, response));
     }
 
+    /**
+     * Import per-name and per-locale greetings from an NDJSON body.
+     * The body is parsed chunk by chunk as it arrives, so it is never buffered whole.
+     * @param request the server request
+     * @param response the server response
+     */
+    private void importGreetingsHandler(ServerRequest request,
+                                        ServerResponse response) {
+        request.content().subscribe(new ImportSubscriber(overrides.startImport(), response));
+    }
+
+    /**
+     * Greet each name in a framed request body, responding with a framed body of the greeting messages.
+     * An empty name greets the world with the default greeting.
+     * @param request the server request
+     * @param response the server response
+     */
+    private void framesHandler(ServerRequest request,
+                               ServerResponse response) {
+        request.content().subscribe(new FramesSubscriber(request, response));
+    }
+
+    /**
+     * Decodes request frames as they arrive and encodes a response frame for each of them.
+     */
+    private final class FramesSubscriber implements Flow.Subscriber<DataChunk> {
+        private final GreetFrames.Decoder decoder = new GreetFrames.Decoder();
+        private final GreetFrames.Encoder encoder = new GreetFrames.Encoder();
+        private final ServerRequest request;
+        private final ServerResponse response;
+        private final Function<String, String> headers;
+        private Flow.Subscription subscription;
+        private boolean failed;
+
+        private FramesSubscriber(ServerRequest request, ServerResponse response) {
+            this.request = request;
+            this.response = response;
+            this.headers = headers(request);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(DataChunk chunk) {
+            if (failed) {
+                chunk.release();
+                return;
+            }
+            try {
+                decoder.feed(chunk.data(), this::greet);
+            } catch (GreetFrames.FrameException e) {
+                failed = true;
+                subscription.cancel();
+                sendFrameError(e);
+                return;
+            } finally {
+                chunk.release();
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            LOGGER.log(Level.FINE, "Failed to read frames", throwable);
+            JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                    .add("error", "Internal error")
+                    .build();
+            response.status(Http.Status.INTERNAL_SERVER_ERROR_500).send(jsonErrorObject);
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            try {
+                decoder.finish();
+            } catch (GreetFrames.FrameException e) {
+                sendFrameError(e);
+                return;
+            }
+            response.headers().contentType(MediaType.parse(GreetFrames.MEDIA_TYPE));
+            response.send(encoder.toByteArray());
+        }
+
+        private void greet(String name) {
+            // an empty name asks for the default greeting
+            String greeted = name.isEmpty() ? "World" : name;
+            encoder.add(greetingFor(request, greeted).render(greeted, headers));
+        }
+
+        private void sendFrameError(GreetFrames.FrameException e) {
+            LOGGER.log(Level.FINE, "Invalid frames", e);
+            JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                    .add("error", e.getMessage())
+                    .add("frame", e.frame())
+                    .build();
+            response.status(Http.Status.BAD_REQUEST_400).send(jsonErrorObject);
+        }
+    }
+
+    /**
+     * Feeds request chunks to an import, requesting one chunk at a time so a fast client cannot
+     * get ahead of the parser.
+     */
+    private static final class ImportSubscriber implements Flow.Subscriber<DataChunk> {
+        private final GreetingOverrides.Import greetingImport;
+        private final ServerResponse response;
+        private final GreetingUpdateEvent event = new GreetingUpdateEvent();
+        private Flow.Subscription subscription;
+        private boolean failed;
+        private long bytes;
+
+        private ImportSubscriber(GreetingOverrides.Import greetingImport, ServerResponse response) {
+            this.greetingImport = greetingImport;
+            this.response = response;
+            event.begin();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(DataChunk chunk) {
+            if (failed) {
+                chunk.release();
+                return;
+            }
+            try {
+                ByteBuffer data = chunk.data();
+                bytes += data.remaining();
+                greetingImport.feed(data);
+            } catch (GreetingOverrides.ImportException e) {
+                failed = true;
+                subscription.cancel();
+                sendImportError(e);
+                return;
+            } finally {
+                chunk.release();
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            LOGGER.log(Level.FINE, "Failed to read import", throwable);
+            JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                    .add("error", "Internal error")
+                    .build();
+            response.status(Http.Status.INTERNAL_SERVER_ERROR_500).send(jsonErrorObject);
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            int count;
+            try {
+                count = greetingImport.commit();
+            } catch (GreetingOverrides.ImportException e) {
+                sendImportError(e);
+                return;
+            }
+            if (event.shouldCommit()) {
+                event.source = "bulk";
+                event.entries = count;
+                event.payloadSize = bytes;
+                event.commit();
+            }
+            JsonObject returnObject = JSON.createObjectBuilder()
+                    .add("imported", count)
+                    .build();
+            response.send(returnObject);
+        }
+
+        private void sendImportError(GreetingOverrides.ImportException e) {
+            LOGGER.log(Level.FINE, "Invalid import", e);
+            JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                    .add("error", e.getMessage())
+                    .add("line", e.line())
+                    .build();
+            response.status(Http.Status.BAD_REQUEST_400).send(jsonErrorObject);
+        }
+    }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * HMAC-SHA256 signatures of HTTP requests, compatible with the {@code http-signatures} security provider
+ * (draft-cavage-http-signatures).
+ * <p>
+ * {@link Mac} instances are pooled, and computed signatures are cached by signing string. As the signed
+ * {@code date} header has a resolution of one second, all requests with the same {@code (request-target)} and
+ * {@code host} within a second share the signing string, and are signed (or verified) only once.
+ */
+final class HmacSignatures {
+    static final String ALGORITHM = "hmac-sha256";
+    static final String REQUEST_TARGET = "(request-target)";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    // cached signatures are only useful within the second of their date, so the cache is simply dropped once full
+    private static final int CACHE_SIZE = 1024;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private static volatile CachedDate lastDate = new CachedDate(0, "");
+    private static volatile CachedDate lastParsedDate = new CachedDate(0, "");
+
+    private final SecretKeySpec key;
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> signatures = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    private HmacSignatures(byte[] secret) {
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+
+        MetricRegistry vendor = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR);
+        this.hits = vendor.counter("signatures.cache.hits");
+        this.misses = vendor.counter("signatures.cache.misses");
+    }
+
+    /**
+     * Create signatures with a shared secret.
+     *
+     * @param secret the {@code hmac.secret} of a key
+     * @return new signatures
+     */
+    static HmacSignatures create(String secret) {
+        return new HmacSignatures(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sign a signing string.
+     *
+     * @param signingString signed header lines, see {@link #signingString(List, Function)}
+     * @return base64 encoded signature
+     */
+    String sign(String signingString) {
+        String signature = signatures.get(signingString);
+        if (null != signature) {
+            hits.inc();
+            return signature;
+        }
+        misses.inc();
+
+        Mac mac = macs.poll();
+        if (null == mac) {
+            mac = newMac();
+        }
+        try {
+            // doFinal resets the mac, so it can be returned to the pool as is
+            signature = Base64.getEncoder().encodeToString(mac.doFinal(signingString.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            macs.offer(mac);
+        }
+
+        if (signatures.size() >= CACHE_SIZE) {
+            signatures.clear();
+        }
+        signatures.put(signingString, signature);
+        return signature;
+    }
+
+    /**
+     * Verify a signature.
+     *
+     * @param signingString signed header lines, see {@link #signingString(List, Function)}
+     * @param signature base64 encoded signature to verify
+     * @return whether the signature is valid
+     */
+    boolean verify(String signingString, String signature) {
+        return MessageDigest.isEqual(sign(signingString).getBytes(StandardCharsets.ISO_8859_1),
+                                     signature.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize " + MAC_ALGORITHM, e);
+        }
+    }
+
+    /**
+     * Create the signing string from header values.
+     *
+     * @param headers names of the signed headers, lower case
+     * @param values values of the headers (including {@code (request-target)})
+     * @return signing string, or {@code null} if a header is missing
+     */
+    static String signingString(List<String> headers, Function<String, String> values) {
+        StringBuilder signingString = new StringBuilder();
+        for (String header : headers) {
+            String value = values.apply(header);
+            if (null == value) {
+                return null;
+            }
+            if (signingString.length() > 0) {
+                signingString.append('\n');
+            }
+            signingString.append(header).append(": ").append(value);
+        }
+        return signingString.toString();
+    }
+
+    /**
+     * Value of the {@code (request-target)} pseudo header.
+     *
+     * @param method HTTP method
+     * @param path request path
+     * @return request target
+     */
+    static String requestTarget(String method, String path) {
+        return method.toLowerCase(Locale.ROOT) + " " + path;
+    }
+
+    /**
+     * Value of the {@code host} header the HTTP client sends for a URI.
+     *
+     * @param uri target URI
+     * @return host and, unless it is the default one, port
+     */
+    static String host(URI uri) {
+        int port = uri.getPort();
+        if (port == -1
+                || ("http".equals(uri.getScheme()) && port == 80)
+                || ("https".equals(uri.getScheme()) && port == 443)) {
+            return uri.getHost();
+        }
+        return uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Value of the {@code date} header for the current second.
+     *
+     * @return current date in the HTTP format
+     */
+    static String date() {
+        long now = System.currentTimeMillis() / 1000;
+        CachedDate date = lastDate;
+        if (date.epochSecond != now) {
+            date = new CachedDate(now, HTTP_DATE.format(Instant.ofEpochSecond(now)));
+            lastDate = date;
+        }
+        return date.value;
+    }
+
+    /**
+     * Whether a {@code date} header is within the allowed clock skew.
+     *
+     * @param value value of the {@code date} header
+     * @param maxSkewSeconds allowed difference from the current time
+     * @return {@code true} if the date is valid and recent enough
+     */
+    static boolean recent(String value, long maxSkewSeconds) {
+        // concurrent requests mostly carry the same date, so it is parsed once
+        CachedDate date = lastParsedDate;
+        long epochSecond;
+        if (value.equals(date.value)) {
+            epochSecond = date.epochSecond;
+        } else {
+            try {
+                epochSecond = ZonedDateTime.parse(value, HTTP_DATE).toEpochSecond();
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+            lastParsedDate = new CachedDate(epochSecond, value);
+        }
+        return Math.abs(System.currentTimeMillis() / 1000 - epochSecond) <= maxSkewSeconds;
+    }
+
+    /**
+     * Format the {@code signature} header.
+     *
+     * @param keyId id of the key
+     * @param headers names of the signed headers
+     * @param signature base64 encoded signature
+     * @return header value
+     */
+    static String signatureHeader(String keyId, List<String> headers, String signature) {
+        return "keyId=\"" + keyId + "\",algorithm=\"" + ALGORITHM + "\",headers=\"" + String.join(" ", headers)
+                + "\",signature=\"" + signature + "\"";
+    }
+
+    /**
+     * Parse the {@code signature} header.
+     *
+     * @param value header value
+     * @return parameters of the signature ({@code keyId}, {@code algorithm}, {@code headers}, {@code signature})
+     */
+    static Map<String, String> parseSignatureHeader(String value) {
+        Map<String, String> parameters = new HashMap<>();
+        int position = 0;
+        while (position < value.length()) {
+            int equals = value.indexOf('=', position);
+            if (equals < 0 || equals + 1 >= value.length() || value.charAt(equals + 1) != '"') {
+                break;
+            }
+            int end = value.indexOf('"', equals + 2);
+            if (end < 0) {
+                break;
+            }
+            parameters.put(value.substring(position, equals).trim(), value.substring(equals + 2, end));
+            int comma = value.indexOf(',', end);
+            position = (comma < 0) ? value.length() : comma + 1;
+        }
+        return parameters;
+    }
+
+    private static final class CachedDate {
+        private final long epochSecond;
+        private final String value;
+
+        private CachedDate(long epochSecond, String value) {
+            this.epochSecond = epochSecond;
+            this.value = value;
+        }
+    }
+}
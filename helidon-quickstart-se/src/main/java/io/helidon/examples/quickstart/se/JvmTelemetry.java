@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.helidon.config.Config;
+import io.helidon.metrics.RegistryFactory;
+import io.helidon.webserver.Routing;
+import io.helidon.webserver.ServerRequest;
+import io.helidon.webserver.ServerResponse;
+import io.helidon.webserver.Service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * JVM runtime telemetry from Java Flight Recorder, published as vendor metrics.
+ * <p>
+ * A recording of GC, allocation, safepoint, thread park and monitor contention events runs in-process. Every
+ * interval the recording is replaced by a new one, and the events of the finished one are aggregated into:
+ * <ul>
+ *     <li>{@code jvm.gc.pause} - histogram of GC pause time per collection (nanoseconds)</li>
+ *     <li>{@code jvm.gc.overhead} - percentage of the last interval spent in GC pauses</li>
+ *     <li>{@code jvm.allocation.rate} - bytes allocated per second in the last interval</li>
+ *     <li>{@code jvm.allocation.bytes.<route>} - bytes allocated by threads handling a route, such as
+ *     {@code jvm.allocation.bytes.get.greet.name} for {@code GET /greet/{name}} ({@code other} for requests
+ *     not matching a registered route, {@code none} when not handling a request)</li>
+ *     <li>{@code jvm.safepoint.sync} - histogram of time to reach a safepoint (nanoseconds)</li>
+ *     <li>{@code jvm.thread.park} - histogram of thread park times above the threshold (nanoseconds)</li>
+ *     <li>{@code jvm.monitor.contention} - histogram of contended monitor enter times above the threshold
+ *     (nanoseconds)</li>
+ *     <li>{@code jvm.virtual.thread.pinned} - histogram of times a virtual thread blocked while pinned to its carrier
+ *     thread, above the threshold (nanoseconds), and the counters {@code jvm.virtual.thread.pinned.count.native}
+ *     (a native frame on the stack) and {@code jvm.virtual.thread.pinned.count.monitor} (a {@code synchronized}
+ *     block or method); only recorded on JVMs with virtual threads</li>
+ * </ul>
+ * Allocation sizes are taken from TLAB refills and outside-TLAB allocations, so they are sampled rather than exact.
+ * MicroProfile Metrics 1.1 has no tags, so the route (or pinning reason) is part of the metric name
+ * (see {@link #metricName}).
+ * As a {@link Service}, it wraps each request in a {@link RouteEvent} to attribute allocations.
+ * <p>
+ * Configured from the {@code app.telemetry} node: {@code enabled}, {@code interval-seconds}
+ * and {@code threshold-millis}.
+ */
+final class JvmTelemetry implements Service {
+    private static final Logger LOGGER = Logger.getLogger(JvmTelemetry.class.getName());
+
+    private static final String GC = "jdk.GarbageCollection";
+    private static final String ALLOCATION_TLAB = "jdk.ObjectAllocationInNewTLAB";
+    private static final String ALLOCATION_OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+    private static final String SAFEPOINT = "jdk.SafepointBegin";
+    private static final String PARK = "jdk.ThreadPark";
+    private static final String MONITOR = "jdk.JavaMonitorEnter";
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final String ROUTE = "io.helidon.examples.quickstart.Route";
+    private static final String NO_ROUTE = "none";
+    private static final String OTHER_ROUTE = "other";
+    // routes registered in Main#createRouting, any other request (such as a 404 or 401 probe) is counted as
+    // "other" so the number of route metrics stays bounded; "{+}" matches the rest of the path
+    private static final List<String> ROUTES = List.of("GET /greet",
+                                                       "GET /greet/outbound",
+                                                       "GET /greet/{name}",
+                                                       "PUT /greet/greeting",
+                                                       "PUT /greet/greeting/bulk",
+                                                       "POST /greet/frames",
+                                                       "GET /admin/jfr",
+                                                       "GET /health",
+                                                       "GET /health/{+}",
+                                                       "GET /metrics",
+                                                       "GET /metrics/{+}");
+
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration threshold;
+    private final MetricRegistry registry;
+    private final Map<String, Counter> routeAllocations = new HashMap<>();
+
+    private Histogram gcPause;
+    private Histogram safepointSync;
+    private Histogram threadPark;
+    private Histogram monitorContention;
+    private Histogram virtualThreadPinned;
+    private final Map<String, Counter> pinnedByReason = new HashMap<>();
+    // allocations of the last window not covered by a route span yet, their request may still have been running
+    private List<Allocation> unattributed = new ArrayList<>();
+    private Instant processedUntil;
+
+    private volatile Recording recording;
+
+    private volatile long allocationRate;
+    private volatile double gcOverhead;
+
+    private JvmTelemetry(boolean enabled, Duration interval, Duration threshold, MetricRegistry registry) {
+        this.enabled = enabled;
+        this.interval = interval;
+        this.threshold = threshold;
+        this.registry = registry;
+    }
+
+    /**
+     * Create telemetry from the {@code app.telemetry} configuration node and start recording if enabled.
+     *
+     * @param config telemetry configuration
+     * @return new telemetry service
+     */
+    static JvmTelemetry create(Config config) {
+        JvmTelemetry telemetry = new JvmTelemetry(config.get("enabled").asBoolean().orElse(false),
+                                                  Duration.ofSeconds(config.get("interval-seconds").asLong().orElse(5L)),
+                                                  Duration.ofMillis(config.get("threshold-millis").asLong().orElse(10L)),
+                                                  RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+        if (telemetry.enabled) {
+            telemetry.start();
+        }
+        return telemetry;
+    }
+
+    @Override
+    public void update(Routing.Rules rules) {
+        if (enabled) {
+            rules.any(this::traceRoute);
+        }
+    }
+
+    private void traceRoute(ServerRequest request, ServerResponse response) {
+        RouteEvent event = new RouteEvent();
+        event.begin();
+        try {
+            request.next();
+        } finally {
+            if (event.shouldCommit()) {
+                event.route = route(request.method().name(), request.path().toString());
+                event.commit();
+            }
+        }
+    }
+
+    private void start() {
+        try {
+            Recording recording = newRecording();
+            recording.start();
+            this.recording = recording;
+            this.processedUntil = recording.getStartTime();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Flight recorder is not available, JVM telemetry is disabled", e);
+            return;
+        }
+
+        this.gcPause = registry.histogram("jvm.gc.pause");
+        this.safepointSync = registry.histogram("jvm.safepoint.sync");
+        this.threadPark = registry.histogram("jvm.thread.park");
+        this.monitorContention = registry.histogram("jvm.monitor.contention");
+        this.virtualThreadPinned = registry.histogram("jvm.virtual.thread.pinned");
+        registry.register("jvm.allocation.rate", (Gauge<Long>) () -> allocationRate);
+        registry.register("jvm.gc.overhead", (Gauge<Double>) () -> gcOverhead);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jvm-telemetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::collect, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private Recording newRecording() {
+        Recording recording = new Recording();
+        recording.setName("jvm-telemetry");
+        recording.setToDisk(true);
+        recording.enable(GC);
+        recording.enable(ALLOCATION_TLAB).withoutStackTrace();
+        recording.enable(ALLOCATION_OUTSIDE_TLAB).withoutStackTrace();
+        recording.enable(SAFEPOINT);
+        recording.enable(PARK).withThreshold(threshold).withoutStackTrace();
+        recording.enable(MONITOR).withThreshold(threshold).withoutStackTrace();
+        // unknown to JVMs without virtual threads, where enabling it has no effect
+        recording.enable(PINNED).withThreshold(threshold).withStackTrace();
+        recording.enable(RouteEvent.class);
+        return recording;
+    }
+
+    private void collect() {
+        // the recording is rotated every interval, so each dump only holds the events of the last window
+        Recording finished = recording;
+        Path file = null;
+        try {
+            Recording next = newRecording();
+            next.start();
+            recording = next;
+            finished.stop();
+            file = Files.createTempFile("jvm-telemetry-", ".jfr");
+            finished.dump(file);
+            // recordings overlap for a moment, events that ended before the window were processed already
+            Instant until = finished.getStopTime();
+            aggregate(file, processedUntil, until);
+            processedUntil = until;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to collect JVM telemetry", e);
+        } finally {
+            finished.close();
+            if (null != file) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Failed to delete " + file, e);
+                }
+            }
+        }
+    }
+
+    private void aggregate(Path file, Instant from, Instant until) throws IOException {
+        Map<Long, List<Span>> spans = new HashMap<>();
+        List<Allocation> allocations = new ArrayList<>();
+        long allocated = 0;
+        long paused = 0;
+        try (RecordingFile events = new RecordingFile(file)) {
+            while (events.hasMoreEvents()) {
+                RecordedEvent event = events.readEvent();
+                String type = event.getEventType().getName();
+                if (ROUTE.equals(type)) {
+                    spans.computeIfAbsent(threadId(event), it -> new ArrayList<>()).add(new Span(event));
+                    continue;
+                }
+                Instant end = event.getEndTime();
+                if (!end.isAfter(from) || end.isAfter(until)) {
+                    continue;
+                }
+                long bytes = 0;
+                switch (type) {
+                case GC:
+                    long pause = event.getDuration("sumOfPauses").toNanos();
+                    gcPause.update(pause);
+                    paused += pause;
+                    break;
+                case ALLOCATION_TLAB:
+                    bytes = event.getLong("tlabSize");
+                    break;
+                case ALLOCATION_OUTSIDE_TLAB:
+                    bytes = event.getLong("allocationSize");
+                    break;
+                case SAFEPOINT:
+                    safepointSync.update(event.getDuration().toNanos());
+                    break;
+                case PARK:
+                    threadPark.update(event.getDuration().toNanos());
+                    break;
+                case MONITOR:
+                    monitorContention.update(event.getDuration().toNanos());
+                    break;
+                case PINNED:
+                    virtualThreadPinned.update(event.getDuration().toNanos());
+                    pinnedByReason.computeIfAbsent(pinReason(event),
+                                                   it -> registry.counter(metricName("jvm.virtual.thread.pinned.count", it)))
+                            .inc();
+                    break;
+                default:
+                    break;
+                }
+                if (bytes > 0) {
+                    allocated += bytes;
+                    allocations.add(new Allocation(threadId(event), event.getStartTime(), bytes));
+                }
+            }
+        }
+
+        // a route span is committed when the request ends, so allocations of the previous window may belong to
+        // requests that ended in this one; they are given one more window, then tagged as not handling a request
+        Map<String, Long> allocatedByRoute = new HashMap<>();
+        for (Allocation allocation : unattributed) {
+            String route = route(spans, allocation);
+            allocatedByRoute.merge((null == route) ? NO_ROUTE : route, allocation.bytes, Long::sum);
+        }
+        List<Allocation> pending = new ArrayList<>();
+        for (Allocation allocation : allocations) {
+            String route = route(spans, allocation);
+            if (null == route) {
+                pending.add(allocation);
+            } else {
+                allocatedByRoute.merge(route, allocation.bytes, Long::sum);
+            }
+        }
+        unattributed = pending;
+
+        long windowNanos = Math.max(1, Duration.between(from, until).toNanos());
+        allocationRate = (long) (allocated * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos);
+        gcOverhead = paused * 100.0 / windowNanos;
+        allocatedByRoute.forEach((route, bytes) -> routeAllocations
+                .computeIfAbsent(route, it -> registry.counter(metricName("jvm.allocation.bytes", it)))
+                .inc(bytes));
+    }
+
+    private static String route(Map<Long, List<Span>> spans, Allocation allocation) {
+        List<Span> threadSpans = spans.get(allocation.thread);
+        if (null != threadSpans) {
+            for (Span span : threadSpans) {
+                if (!allocation.time.isBefore(span.start) && !allocation.time.isAfter(span.end)) {
+                    return span.route;
+                }
+            }
+        }
+        return null;
+    }
+
+    // pinned by a native frame (a native method or a call back into Java from one), otherwise by a held monitor
+    private static String pinReason(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (null != stackTrace) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                if ("Native".equals(frame.getType())) {
+                    return "native";
+                }
+            }
+        }
+        return "monitor";
+    }
+
+    private static long threadId(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        return (null == thread) ? -1 : thread.getJavaThreadId();
+    }
+
+    /**
+     * Name of the metric for one value of a dimension, such as {@code jvm.allocation.bytes.get.greet.name}
+     * for the route {@code GET /greet/{name}}.
+     *
+     * @param name metric name
+     * @param value route or other dimension value
+     * @return metric name followed by the lower case words of the value, separated by dots
+     */
+    static String metricName(String name, String value) {
+        String suffix = value.replace("{+}", "any")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", ".")
+                .replaceAll("^\\.|\\.$", "");
+        return name + "." + suffix;
+    }
+
+    /**
+     * Route of a request.
+     *
+     * @param method HTTP method
+     * @param path request path
+     * @return the matching registered route, such as {@code GET /greet/{name}}, or {@code other}
+     */
+    static String route(String method, String path) {
+        String[] segments = segments(path);
+        for (String route : ROUTES) {
+            int space = route.indexOf(' ');
+            if (route.substring(0, space).equals(method) && matches(segments(route.substring(space + 1)), segments)) {
+                return route;
+            }
+        }
+        return OTHER_ROUTE;
+    }
+
+    private static boolean matches(String[] pattern, String[] segments) {
+        for (int i = 0; i < pattern.length; i++) {
+            if ("{+}".equals(pattern[i])) {
+                return segments.length > i;
+            }
+            if (i >= segments.length || !(pattern[i].startsWith("{") || pattern[i].equals(segments[i]))) {
+                return false;
+            }
+        }
+        return pattern.length == segments.length;
+    }
+
+    private static String[] segments(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        return (start >= end) ? new String[0] : path.substring(start, end).split("/");
+    }
+
+    private static final class Span {
+        private final Instant start;
+        private final Instant end;
+        private final String route;
+
+        private Span(RecordedEvent event) {
+            this.start = event.getStartTime();
+            this.end = event.getEndTime();
+            this.route = event.getString("route");
+        }
+    }
+
+    private static final class Allocation {
+        private final long thread;
+        private final Instant time;
+        private final long bytes;
+
+        private Allocation(long thread, Instant time, long bytes) {
+            this.thread = thread;
+            this.time = time;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -18,14 +18,23 @@ package io.helidon.examples.quickstart.se;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.LogManager;
 
 import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
 import io.helidon.config.PollingStrategies;
+import io.helidon.config.spi.ConfigSource;
 import io.helidon.health.HealthSupport;
 import io.helidon.health.checks.HealthChecks;
 import io.helidon.media.jsonp.server.JsonSupport;
 import io.helidon.metrics.MetricsSupport;
+import io.helidon.metrics.RegistryFactory;
 import io.helidon.security.integration.webserver.WebSecurity;
 import io.helidon.tracing.TracerBuilder;
 import io.helidon.webserver.Routing;
@@ -33,6 +42,8 @@ import io.helidon.webserver.ServerConfiguration;
 import io.helidon.webserver.WebServer;
 
 import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.graalvm.nativeimage.ImageInfo;
 
 import static io.helidon.config.ConfigSources.classpath;
 import static io.helidon.config.ConfigSources.file;
@@ -41,6 +52,7 @@ import static io.helidon.config.ConfigSources.file;
  * Simple Hello World rest application.
  */
 public final class Main {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
 
     /**
      * Cannot be instantiated.
@@ -54,6 +66,9 @@ public final class Main {
      * @throws IOException if there are problems reading logging properties
      */
     public static void main(final String[] args) throws IOException {
+        // log handlers stay open until the shutdown hook of startServer is done, set before logging is initialized
+        System.setProperty("java.util.logging.manager", ShutdownLogManager.class.getName());
+
         startServer();
     }
 
@@ -76,7 +91,12 @@ public final class Main {
                         .tracer(TracerBuilder.create(config.get("tracing")).buildAndRegister())
                         .build();
 
-        WebServer server = WebServer.create(serverConfig, createRouting(config));
+        // optional JIT warm-up, the server reports ready once it completes
+        WarmUp warmUp = WarmUp.create(config.get("app.warmup"));
+        // on SIGTERM, in-flight requests are drained before the server shuts down (see shutdown)
+        Drain drain = Drain.create(config.get("app.drain"));
+
+        WebServer server = WebServer.create(serverConfig, createRouting(config, warmUp, drain));
 
         // Try to start the server. If successful, print some info and arrange to
         // print a message at shutdown. If unsuccessful, print the exception.
@@ -84,6 +104,9 @@ public final class Main {
                 .thenAccept(ws -> {
                     System.out.println(
                             "WEB server is up! http://localhost:" + ws.port() + "/greet");
+                    warmUp.start(ws.port());
+                    // a single ordered shutdown: drain, shut down the server, then close logging
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(ws, drain), "shutdown"));
                     ws.whenShutdown().thenRun(()
                                                       -> System.out.println("WEB server is DOWN. Good bye!"));
                 })
@@ -98,51 +121,89 @@ public final class Main {
         return server;
     }
 
+    private static void shutdown(WebServer server, Drain drain) {
+        drain.drain();
+        try {
+            server.shutdown().toCompletableFuture().get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Server did not shut down cleanly: " + e.getMessage());
+        }
+        ShutdownLogManager.closeLogging();
+    }
+
     private static Config buildConfig() {
+        // pool sizes derived from the container limits (app.sizing.mode=auto) take precedence over all other sources
+        AutoSizing sizing = AutoSizing.create(Config.builder().sources(sources(false)).build().get("app.sizing"));
+        sizing.apply(RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
+
+        List<Supplier<ConfigSource>> sources = sources(true);
+        sources.add(0, ConfigSources.create(sizing.overrides()));
         return Config.builder()
-                .sources(
-                        classpath("se-test.yaml").optional(),
-                        file("../conf/se.yaml")
-                                .pollingStrategy(PollingStrategies::watch)
-                                .optional(),
-                        classpath("application.yaml"))
+                .sources(sources)
                 .build();
     }
 
+    private static List<Supplier<ConfigSource>> sources(boolean watch) {
+        List<Supplier<ConfigSource>> sources = new ArrayList<>();
+        sources.add(classpath("se-test.yaml").optional());
+        sources.add(watch
+                            ? file("../conf/se.yaml").pollingStrategy(PollingStrategies::watch).optional()
+                            : file("../conf/se.yaml").optional());
+        sources.add(classpath("application.yaml"));
+        return sources;
+    }
+
     /**
      * Creates new {@link Routing}.
      *
-     * @return routing configured with JSON support, a health check, and a service
+     * @return routing configured with JSON support, health checks, and services
      * @param config configuration of this server
+     * @param warmUp warm-up to use as a readiness check
+     * @param drain drain to track in-flight requests with
      */
-    private static Routing createRouting(Config config) {
+    private static Routing createRouting(Config config, WarmUp warmUp, Drain drain) {
 
         MetricsSupport metrics = MetricsSupport.create();
         GreetService greetService = new GreetService(config);
+        drain.trackOutbound(greetService::outstandingCalls);
         HealthSupport health = HealthSupport.builder()
                 .addLiveness(HealthChecks.healthChecks())   // Adds a convenient set of checks
                 .addLiveness(() -> HealthCheckResponse.named("custom") // a custom health check
                         .up()
                         .withData("timestamp", System.currentTimeMillis())
                         .build())
+                .addReadiness(warmUp)   // Ready once the JIT warm-up is over
+                .addReadiness(drain)    // Not ready while draining
                 .build();
 
-        return Routing.builder()
-                .register(JsonSupport.create())
-                .register(WebSecurity.create(config.get("security")))
+        Routing.Builder routing = Routing.builder()
+                .register(JsonSupport.create());
+        // JFR recordings are not available in a native image, keep them out of it
+        if (!ImageInfo.inImageCode()) {
+            routing.register(JvmTelemetry.create(config.get("app.telemetry")));  // JVM telemetry in "/metrics/vendor"
+        }
+        routing.register(WebSecurity.create(config.get("security")))
                 .register(health)                   // Health at "/health"
                 .register(metrics)                  // Metrics at "/metrics"
-                .register("/greet", greetService)
-                .build();
+                .register(drain)                    // Tracks (or, while draining, rejects) the routes below
+                .register("/greet", greetService);
+        if (!ImageInfo.inImageCode()) {
+            routing.register("/admin", new ProfilingService(Profiler.create(config.get("app.profiling"))));
+        }
+        return routing.build();
     }
 
     /**
      * Configure logging from logging.properties file.
+     * Log records are written by {@link AsyncLogHandler}, its counters are exposed as vendor metrics.
      */
     private static void setupLogging() throws IOException {
         try (InputStream is = Main.class.getResourceAsStream("/logging.properties")) {
             LogManager.getLogManager().readConfiguration(is);
         }
+        AsyncLogHandler.registerMetrics(RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR));
     }
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a single outbound call to a peer. The event duration is the latency of the call.
+ */
+@Name("io.helidon.examples.quickstart.Outbound")
+@Label("Outbound Call")
+@Category({"Helidon", "Quickstart"})
+@StackTrace(false)
+final class OutboundEvent extends Event {
+    @Label("Peer")
+    String peer;
+
+    @Label("Backup Request")
+    boolean backup;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Payload Size")
+    @DataAmount
+    int payloadSize;
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+
+import io.helidon.common.CollectionsHelper;
+import io.helidon.config.Config;
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Client side load balancing and request hedging across a list of peers.
+ * <p>
+ * Configured from the {@code app.outbound} node:
+ * <ul>
+ *     <li>{@code peers} - base URIs of the peers</li>
+ *     <li>{@code protocol} - {@code json} (default) or {@code binary} (see {@link GreetFrames})</li>
+ *     <li>{@code balancer} - {@code p2c} (power of two choices, default) or {@code least-outstanding}</li>
+ *     <li>{@code timeout-millis} - connect and read timeout of each request to a peer, defaults to {@code 5000}</li>
+ *     <li>{@code hedge.enabled} - whether to send a backup request to a second peer when the first one is slow</li>
+ *     <li>{@code hedge.percentile} - latency percentile after which the backup request is sent</li>
+ *     <li>{@code hedge.min-delay-millis} - lower bound of the hedge delay</li>
+ * </ul>
+ */
+final class OutboundPeers {
+    static final String BALANCER_P2C = "p2c";
+    static final String BALANCER_LEAST_OUTSTANDING = "least-outstanding";
+    static final String PROTOCOL_JSON = "json";
+    static final String PROTOCOL_BINARY = "binary";
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbound-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Peer> peers;
+    private final boolean leastOutstanding;
+    private final boolean binary;
+    private final boolean hedging;
+    private final double hedgePercentile;
+    private final long minHedgeDelayNanos;
+    private final long timeoutMillis;
+    private final Histogram latency;
+    private final Counter hedgesFired;
+    private final Counter hedgeWins;
+
+    private volatile long hedgeDelayNanos;
+    private volatile long hedgeDelayComputedAt;
+
+    private OutboundPeers(Config config, Client client, String defaultPeer) {
+        long timeoutMillis = config.get("timeout-millis").asLong().orElse(5000L);
+        List<Peer> peers = new ArrayList<>();
+        for (String uri : config.get("peers").asList(String.class).orElse(CollectionsHelper.listOf(defaultPeer))) {
+            peers.add(new Peer(client.target(uri)
+                                       .property(ClientProperties.CONNECT_TIMEOUT, (int) timeoutMillis)
+                                       .property(ClientProperties.READ_TIMEOUT, (int) timeoutMillis)));
+        }
+        if (peers.isEmpty()) {
+            throw new IllegalArgumentException("At least one outbound peer must be configured");
+        }
+        this.peers = peers;
+        this.leastOutstanding = BALANCER_LEAST_OUTSTANDING.equals(config.get("balancer")
+                                                                          .asString()
+                                                                          .orElse(BALANCER_P2C));
+        this.binary = PROTOCOL_BINARY.equals(config.get("protocol").asString().orElse(PROTOCOL_JSON));
+        this.hedging = config.get("hedge.enabled").asBoolean().orElse(false) && peers.size() > 1;
+        this.hedgePercentile = config.get("hedge.percentile").asDouble().orElse(0.95);
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.get("hedge.min-delay-millis")
+                                                                        .asLong()
+                                                                        .orElse(5L));
+        this.timeoutMillis = timeoutMillis;
+        this.hedgeDelayNanos = minHedgeDelayNanos;
+        this.hedgeDelayComputedAt = System.nanoTime();
+
+        MetricRegistry appRegistry = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.APPLICATION);
+        this.latency = appRegistry.histogram("outbound.latency");
+        this.hedgesFired = appRegistry.counter("outbound.hedge.fired");
+        this.hedgeWins = appRegistry.counter("outbound.hedge.wins");
+    }
+
+    /**
+     * Create peers from the {@code app.outbound} configuration node.
+     *
+     * @param config outbound configuration
+     * @param client client to create peer targets with
+     * @param defaultPeer peer to use when none is configured
+     * @return new outbound peers
+     */
+    static OutboundPeers create(Config config, Client client, String defaultPeer) {
+        return new OutboundPeers(config, client, defaultPeer);
+    }
+
+    /**
+     * Call one of the peers, hedging the call if configured.
+     *
+     * @param call asynchronous request to a peer target, such as a jersey {@code rx()} call
+     * @param payloadSize size of a response body in bytes, for {@link OutboundEvent}
+     * @param <T> type of the response
+     * @return completion stage with the first successful response
+     */
+    <T> CompletionStage<T> call(Function<WebTarget, CompletionStage<T>> call, ToIntFunction<T> payloadSize) {
+        HedgedCall<T> hedgedCall = new HedgedCall<>(call, payloadSize, select(null));
+        hedgedCall.start();
+        return hedgedCall.result;
+    }
+
+    /**
+     * Whether peers are called with the binary protocol.
+     *
+     * @return {@code true} for {@link GreetFrames}, {@code false} for JSON
+     */
+    boolean binary() {
+        return binary;
+    }
+
+    /**
+     * Number of calls to peers in progress.
+     *
+     * @return outstanding calls across all peers
+     */
+    int outstanding() {
+        int outstanding = 0;
+        for (Peer peer : peers) {
+            outstanding += peer.outstanding.get();
+        }
+        return outstanding;
+    }
+
+    /**
+     * Longest time a call takes: a request and its backup request (or retry), each bounded by the timeout.
+     *
+     * @return call timeout in milliseconds
+     */
+    long callTimeoutMillis() {
+        return 2 * timeoutMillis;
+    }
+
+    private Peer select(Peer exclude) {
+        int size = peers.size();
+        if (size == 1) {
+            return peers.get(0);
+        }
+        if (leastOutstanding) {
+            Peer best = null;
+            for (Peer peer : peers) {
+                if (peer != exclude && (best == null || peer.outstanding.get() < best.outstanding.get())) {
+                    best = peer;
+                }
+            }
+            return best;
+        }
+        // power of two choices: two distinct random peers, take the less loaded one
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Peer first = randomPeer(random, exclude);
+        Peer second = randomPeer(random, exclude);
+        if (size > ((null == exclude) ? 1 : 2)) {
+            while (second == first) {
+                second = randomPeer(random, exclude);
+            }
+        }
+        return (second.outstanding.get() < first.outstanding.get()) ? second : first;
+    }
+
+    private Peer randomPeer(ThreadLocalRandom random, Peer exclude) {
+        Peer peer;
+        do {
+            peer = peers.get(random.nextInt(peers.size()));
+        } while (peer == exclude);
+        return peer;
+    }
+
+    private long hedgeDelayNanos() {
+        // snapshots are not free, so the delay is recomputed at most every DELAY_REFRESH_NANOS
+        long now = System.nanoTime();
+        if (now - hedgeDelayComputedAt > DELAY_REFRESH_NANOS) {
+            hedgeDelayComputedAt = now;
+            hedgeDelayNanos = Math.max(minHedgeDelayNanos, (long) latency.getSnapshot().getValue(hedgePercentile));
+        }
+        return hedgeDelayNanos;
+    }
+
+    private static final class Peer {
+        private final WebTarget target;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Peer(WebTarget target) {
+            this.target = target;
+        }
+    }
+
+    private final class HedgedCall<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger();
+        // set once a backup request was sent (or when it must not be sent at all)
+        private final AtomicBoolean hedged = new AtomicBoolean(!hedging);
+        private final Function<WebTarget, CompletionStage<T>> call;
+        private final ToIntFunction<T> payloadSize;
+        private final Peer primary;
+
+        private HedgedCall(Function<WebTarget, CompletionStage<T>> call, ToIntFunction<T> payloadSize, Peer primary) {
+            this.call = call;
+            this.payloadSize = payloadSize;
+            this.primary = primary;
+        }
+
+        private void start() {
+            running.incrementAndGet();
+            attempt(primary, false);
+            if (!hedged.get()) {
+                ScheduledFuture<?> timer = SCHEDULER.schedule(this::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+                result.whenComplete((value, throwable) -> timer.cancel(false));
+            }
+        }
+
+        private void hedge() {
+            if (result.isDone()) {
+                return;
+            }
+            // counted as running before the flag is set, so a failed request that loses the race for the flag
+            // against the hedge timer still sees the backup request as running
+            running.incrementAndGet();
+            if (!hedged.compareAndSet(false, true)) {
+                running.decrementAndGet();
+                return;
+            }
+            hedgesFired.inc();
+            attempt(select(primary), true);
+        }
+
+        // the loser is not cancelled, cancelling the stage would not abort the request; it ends at its read timeout
+        private void attempt(Peer peer, boolean backup) {
+            peer.outstanding.incrementAndGet();
+            OutboundEvent event = new OutboundEvent();
+            event.begin();
+            long start = System.nanoTime();
+            CompletionStage<T> request;
+            try {
+                request = call.apply(peer.target);
+            } catch (RuntimeException e) {
+                request = CompletableFuture.failedStage(e);
+            }
+            request.whenComplete((value, throwable) -> {
+                peer.outstanding.decrementAndGet();
+                if (null == throwable) {
+                    latency.update(System.nanoTime() - start);
+                    if (result.complete(value) && backup) {
+                        hedgeWins.inc();
+                    }
+                } else {
+                    failed(throwable);
+                }
+                commit(event, peer, backup, value);
+            });
+        }
+
+        private void commit(OutboundEvent event, Peer peer, boolean backup, T value) {
+            if (event.shouldCommit()) {
+                event.peer = peer.target.getUri().toString();
+                event.backup = backup;
+                event.success = (null != value);
+                event.payloadSize = (null == value) ? 0 : payloadSize.applyAsInt(value);
+                event.commit();
+            }
+        }
+
+        private void failed(Throwable throwable) {
+            if (running.decrementAndGet() > 0 || result.isDone()) {
+                return;
+            }
+            // the only request failed - use the backup request (if any) as a retry
+            hedge();
+            if (running.get() == 0) {
+                result.completeExceptionally(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.helidon.config.Config;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Time-boxed, on-demand Java Flight Recorder recordings. Only a single recording may run at a time.
+ */
+final class Profiler {
+    static final String DEFAULT_PROFILE = "default";
+    static final Duration DEFAULT_DURATION = Duration.ofSeconds(30);
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jfr-profiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean recording = new AtomicBoolean();
+    private final Duration maxDuration;
+
+    private Profiler(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Create a profiler from the {@code app.profiling} configuration node.
+     *
+     * @param config profiling configuration
+     * @return a new profiler
+     */
+    static Profiler create(Config config) {
+        return new Profiler(Duration.ofSeconds(config.get("max-duration-seconds").asLong().orElse(300L)));
+    }
+
+    /**
+     * Start a recording.
+     *
+     * @param profile name of the JFR configuration to use, such as {@code default} or {@code profile}
+     * @param duration how long to record, limited by the configured maximal duration
+     * @return completion stage with the recording file, the caller is responsible for deleting it
+     * @throws IllegalArgumentException if the profile does not exist
+     * @throws IllegalStateException if another recording is running
+     */
+    CompletionStage<Path> record(String profile, Duration duration) {
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(profile);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown profile " + profile, e);
+        }
+        Duration limited = (duration.compareTo(maxDuration) > 0) ? maxDuration : duration;
+        if (limited.isNegative() || limited.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        if (!recording.compareAndSet(false, true)) {
+            throw new IllegalStateException("A recording is already running");
+        }
+
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        Recording jfr = new Recording(configuration);
+        try {
+            jfr.setName("greet-" + profile);
+            jfr.start();
+        } catch (RuntimeException e) {
+            jfr.close();
+            recording.set(false);
+            throw e;
+        }
+
+        SCHEDULER.schedule(() -> {
+            try {
+                jfr.stop();
+                Path file = Files.createTempFile("greet-", ".jfr");
+                jfr.dump(file);
+                result.complete(file);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                jfr.close();
+                recording.set(false);
+            }
+        }, limited.toMillis(), TimeUnit.MILLISECONDS);
+
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+
+import io.helidon.common.http.Http;
+import io.helidon.common.http.MediaType;
+import io.helidon.security.integration.webserver.WebSecurity;
+import io.helidon.webserver.Routing;
+import io.helidon.webserver.ServerRequest;
+import io.helidon.webserver.ServerResponse;
+import io.helidon.webserver.Service;
+
+/**
+ * Admin service to record the server with Java Flight Recorder. Example:
+ *
+ * Record for 60 seconds using the "profile" settings:
+ * curl -u jack:password -o greet.jfr "http://localhost:8080/admin/jfr?profile=profile&duration=60"
+ *
+ * The recording includes the custom greeting events (responses, outbound calls and greeting updates).
+ * Recording requires an authenticated user with the {@code admin} role, whether or not the
+ * {@code security.web-server} paths protect {@code /admin}; without a security provider it is always refused.
+ */
+public class ProfilingService implements Service {
+
+    private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
+
+    private static final Logger LOGGER = Logger.getLogger(ProfilingService.class.getName());
+
+    private static final String ADMIN_ROLE = "admin";
+
+    private final Profiler profiler;
+
+    ProfilingService(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public void update(Routing.Rules rules) {
+        rules.get("/jfr", WebSecurity.rolesAllowed(ADMIN_ROLE), this::recordHandler);
+    }
+
+    /**
+     * Record for the requested duration and send back the recording.
+     * @param request the server request
+     * @param response the server response
+     */
+    private void recordHandler(ServerRequest request, ServerResponse response) {
+        String profile = request.queryParams().first("profile").orElse(Profiler.DEFAULT_PROFILE);
+        Duration duration;
+        try {
+            duration = request.queryParams()
+                    .first("duration")
+                    .map(Long::parseLong)
+                    .map(Duration::ofSeconds)
+                    .orElse(Profiler.DEFAULT_DURATION);
+        } catch (NumberFormatException e) {
+            sendError(response, Http.Status.BAD_REQUEST_400, "Duration must be a number of seconds");
+            return;
+        }
+
+        try {
+            profiler.record(profile, duration)
+                    .thenAccept(file -> sendRecording(response, file))
+                    .exceptionally(throwable -> {
+                        LOGGER.log(Level.WARNING, "Recording failed", throwable);
+                        sendError(response, Http.Status.INTERNAL_SERVER_ERROR_500, "Recording failed");
+                        return null;
+                    });
+        } catch (IllegalArgumentException e) {
+            sendError(response, Http.Status.BAD_REQUEST_400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(response, Http.Status.CONFLICT_409, e.getMessage());
+        }
+    }
+
+    private void sendRecording(ServerResponse response, Path file) {
+        SeekableByteChannel channel;
+        try {
+            channel = Files.newByteChannel(file);
+        } catch (IOException e) {
+            delete(file);
+            throw new IllegalStateException("Cannot read recording", e);
+        }
+        response.headers().contentType(MediaType.APPLICATION_OCTET_STREAM);
+        response.headers().put("Content-Disposition", "attachment; filename=\"greet.jfr\"");
+        response.send(channel)
+                .whenComplete((res, throwable) -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to close recording", e);
+                    }
+                    delete(file);
+                });
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete recording " + file, e);
+        }
+    }
+
+    private static void sendError(ServerResponse response, Http.Status status, String message) {
+        JsonObject jsonErrorObject = JSON.createObjectBuilder()
+                .add("error", message)
+                .build();
+        response.status(status).send(jsonErrorObject);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.logging.LogManager;
+
+/**
+ * Log manager that keeps the log handlers (such as {@link AsyncLogHandler}) open while the JVM shuts down.
+ * <p>
+ * The JDK resets the log manager, closing all handlers, from its own shutdown hook, which runs concurrently with
+ * the application shutdown. Installed through the {@code java.util.logging.manager} system property, this manager
+ * ignores that reset, and logging is closed by {@link #closeLogging()} as the last step of the application shutdown.
+ */
+public final class ShutdownLogManager extends LogManager {
+    private volatile boolean closing;
+
+    /**
+     * Create a new log manager, called by {@link LogManager}.
+     */
+    public ShutdownLogManager() {
+    }
+
+    @Override
+    public void reset() {
+        if (closing || !shuttingDown()) {
+            super.reset();
+        }
+    }
+
+    /**
+     * Close all log handlers, if this manager is installed; otherwise the JDK closes them on its own.
+     */
+    static void closeLogging() {
+        LogManager manager = LogManager.getLogManager();
+        if (manager instanceof ShutdownLogManager) {
+            ((ShutdownLogManager) manager).closing = true;
+            manager.reset();
+        }
+    }
+
+    private static boolean shuttingDown() {
+        // there is no API to check for it, but hooks cannot be added once the shutdown has started
+        try {
+            Thread hook = new Thread(() -> { });
+            Runtime.getRuntime().addShutdownHook(hook);
+            Runtime.getRuntime().removeShutdownHook(hook);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import io.helidon.common.CollectionsHelper;
+import io.helidon.config.Config;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+
+/**
+ * JIT warm-up. Replays a synthetic mix of {@code GET} requests against the routes of this server over loopback,
+ * so the request paths are compiled by C2 before the server reports ready.
+ * <p>
+ * Configured from the {@code app.warmup} node:
+ * <ul>
+ *     <li>{@code enabled} - whether to warm up, defaults to {@code false}</li>
+ *     <li>{@code paths} - request paths to replay, picked at random; repeat a path to make it more frequent</li>
+ *     <li>{@code requests} - total number of requests</li>
+ *     <li>{@code concurrency} - number of concurrent clients</li>
+ *     <li>{@code budget-seconds} - time after which the server reports ready even if warm-up has not completed</li>
+ *     <li>{@code username} and {@code password} - identity to send (HTTP basic), as the {@code /greet} routes
+ *     require an authenticated user once security is configured</li>
+ * </ul>
+ * As a readiness check, it reports {@code DOWN} until the warm-up completes or its time budget expires.
+ * <p>
+ * Warm-up requests carry the {@link #HEADER} with a token known only to this process, handlers use
+ * {@link #isWarmUp(String)} to keep them out of the application metrics.
+ */
+final class WarmUp implements HealthCheck {
+    private static final Logger LOGGER = Logger.getLogger(WarmUp.class.getName());
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final String TOKEN = UUID.randomUUID().toString();
+
+    static final String HEADER = "X-Warm-Up";
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicBoolean unauthorizedLogged = new AtomicBoolean();
+    private final boolean enabled;
+    private final List<String> paths;
+    private final int requests;
+    private final int concurrency;
+    private final Duration budget;
+    private final String authorization;
+
+    private volatile boolean started;
+    private volatile boolean done;
+    private volatile long deadline;
+
+    private WarmUp(boolean enabled,
+                   List<String> paths,
+                   int requests,
+                   int concurrency,
+                   Duration budget,
+                   String username,
+                   String password) {
+        this.enabled = enabled && !paths.isEmpty();
+        this.paths = paths;
+        this.requests = requests;
+        this.concurrency = Math.max(1, concurrency);
+        this.budget = budget;
+        this.authorization = (null == username)
+                ? null
+                : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Create warm-up from the {@code app.warmup} configuration node.
+     *
+     * @param config warm-up configuration
+     * @return new warm-up, started with {@link #start(int)}
+     */
+    static WarmUp create(Config config) {
+        return new WarmUp(config.get("enabled").asBoolean().orElse(false),
+                          config.get("paths").asList(String.class).orElse(CollectionsHelper.listOf("/greet",
+                                                                                                   "/greet/Joe")),
+                          config.get("requests").asInt().orElse(10000),
+                          config.get("concurrency").asInt().orElse(4),
+                          Duration.ofSeconds(config.get("budget-seconds").asLong().orElse(30L)),
+                          config.get("username").asString().orElse(null),
+                          config.get("password").asString().orElse(""));
+    }
+
+    /**
+     * Whether a request was sent by the warm-up.
+     *
+     * @param header value of the {@link #HEADER} request header, may be {@code null}
+     * @return {@code true} for warm-up requests
+     */
+    static boolean isWarmUp(String header) {
+        return TOKEN.equals(header);
+    }
+
+    /**
+     * Start the warm-up in the background.
+     *
+     * @param port port of the started server
+     */
+    void start(int port) {
+        deadline = System.nanoTime() + budget.toNanos();
+        started = true;
+        if (!enabled) {
+            return;
+        }
+        LOGGER.info("Warming up with " + requests + " requests, for at most " + budget.getSeconds() + " seconds");
+
+        long startedAt = System.nanoTime();
+        AtomicInteger remaining = new AtomicInteger(requests);
+        AtomicInteger running = new AtomicInteger(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    replay(port, remaining);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        done = true;
+                        LOGGER.info("Warm-up finished in "
+                                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms, "
+                                            + completed.get() + " requests succeeded, " + failed.get() + " failed");
+                    }
+                }
+            }, "warm-up-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("warmup")
+                .state(!enabled || done || (started && System.nanoTime() - deadline > 0))
+                .withData("completed", completed.get())
+                .withData("failed", failed.get())
+                .build();
+    }
+
+    private void replay(int port, AtomicInteger remaining) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (remaining.getAndDecrement() > 0 && System.nanoTime() - deadline < 0) {
+            String path = paths.get(random.nextInt(paths.size()));
+            if (request(port, path)) {
+                completed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean request(int port, String path) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http", "localhost", port, path).openConnection();
+            conn.setConnectTimeout(TIMEOUT_MILLIS);
+            conn.setReadTimeout(TIMEOUT_MILLIS);
+            conn.setRequestProperty("Accept", "application/json");
+            conn.setRequestProperty(HEADER, TOKEN);
+            if (null != authorization) {
+                conn.setRequestProperty("Authorization", authorization);
+            }
+            int status = conn.getResponseCode();
+            if (status == 401 && unauthorizedLogged.compareAndSet(false, true)) {
+                LOGGER.warning("Warm-up request to " + path + " was not authorized, configure app.warmup.username");
+            }
+            // read the whole response, so the connection is kept alive and reused
+            try (InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream()) {
+                if (null != in) {
+                    byte[] buffer = new byte[1024];
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
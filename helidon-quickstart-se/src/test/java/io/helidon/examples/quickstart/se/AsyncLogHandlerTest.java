@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Overflow of the {@link AsyncLogHandler} ring buffer; the writer thread is held in its first write,
+ * so the buffer fills up.
+ */
+public class AsyncLogHandlerTest {
+    private static final Formatter MESSAGE = new Formatter() {
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage() + "\n";
+        }
+    };
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        HeldWriter out = new HeldWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(4, 256, AsyncLogHandler.Overflow.DROP, 10, out);
+        handler.setFormatter(MESSAGE);
+        long dropped = AsyncLogHandler.dropped();
+
+        handler.publish(record(0));
+        out.awaitWriting();
+        // 4 records fill the buffer, the last 3 are dropped
+        for (int i = 1; i <= 7; i++) {
+            handler.publish(record(i));
+        }
+        Assertions.assertEquals(dropped + 3, AsyncLogHandler.dropped(), "dropped records");
+
+        out.release();
+        handler.close();
+        Assertions.assertEquals("0\n1\n2\n3\n4\n", out.toString(), "written records");
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception {
+        HeldWriter out = new HeldWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(2, 256, AsyncLogHandler.Overflow.BLOCK, 10, out);
+        handler.setFormatter(MESSAGE);
+        long dropped = AsyncLogHandler.dropped();
+
+        handler.publish(record(0));
+        out.awaitWriting();
+        handler.publish(record(1));
+        handler.publish(record(2));
+        Thread publisher = new Thread(() -> {
+            handler.publish(record(3));
+            handler.publish(record(4));
+        });
+        publisher.start();
+        publisher.join(200);
+        Assertions.assertTrue(publisher.isAlive(), "publisher waits for space");
+
+        out.release();
+        publisher.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(publisher.isAlive(), "publisher done once the writer catches up");
+        handler.close();
+        Assertions.assertEquals(dropped, AsyncLogHandler.dropped(), "dropped records");
+        Assertions.assertEquals("0\n1\n2\n3\n4\n", out.toString(), "written records");
+    }
+
+    private static LogRecord record(int sequence) {
+        return new LogRecord(Level.INFO, String.valueOf(sequence));
+    }
+
+    /**
+     * Writer that holds the first write until released.
+     */
+    private static final class HeldWriter extends Writer {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final StringBuilder written = new StringBuilder();
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            writing.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.append(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void awaitWriting() throws InterruptedException {
+            Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS), "writer started");
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public String toString() {
+            return written.toString();
+        }
+    }
+}
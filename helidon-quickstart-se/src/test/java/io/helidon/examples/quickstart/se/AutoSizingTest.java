@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing of the cgroup v2 limits and the pool sizes derived from them.
+ */
+public class AutoSizingTest {
+    private static final Config AUTO = Config.create(ConfigSources.create(Map.of("mode", AutoSizing.MODE_AUTO)));
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    public void testCpuMax() throws IOException {
+        Assertions.assertEquals(-1, AutoSizing.readCpuLimit(write("max 100000")), 0, "no limit");
+        Assertions.assertEquals(1.5, AutoSizing.readCpuLimit(write("150000 100000\n")), 0, "quota/period");
+        Assertions.assertEquals(0.25, AutoSizing.readCpuLimit(write("25000 100000")), 0, "fraction of a CPU");
+        Assertions.assertEquals(-1, AutoSizing.readCpuLimit(write("150000")), 0, "no period");
+        Assertions.assertEquals(-1, AutoSizing.readCpuLimit(write("many 100000")), 0, "malformed quota");
+        Assertions.assertEquals(-1, AutoSizing.readCpuLimit(Path.of("/nonexistent/cpu.max")), 0, "no file");
+    }
+
+    @Test
+    public void testMemoryMax() throws IOException {
+        Assertions.assertEquals(-1, AutoSizing.readMemoryLimit(write("max")), "no limit");
+        Assertions.assertEquals(512 * MIB, AutoSizing.readMemoryLimit(write("536870912\n")), "bytes");
+        Assertions.assertEquals(-1, AutoSizing.readMemoryLimit(write("")), "empty");
+        Assertions.assertEquals(-1, AutoSizing.readMemoryLimit(Path.of("/nonexistent/memory.max")), "no file");
+    }
+
+    @Test
+    public void testQuotaRoundedUp() throws IOException {
+        int available = Runtime.getRuntime().availableProcessors();
+        Map<String, String> overrides = AutoSizing.create(AUTO, cgroup("150000 100000", "max")).overrides();
+        // 1.5 CPUs are rounded up to 2, but never above the available processors
+        int cpus = Math.min(available, 2);
+        Assertions.assertEquals(String.valueOf(cpus), overrides.get("server.workers"), "I/O threads");
+        Assertions.assertEquals(String.valueOf(Math.max(4, cpus * 8)),
+                                overrides.get("app.execution.platform-threads"),
+                                "blocking threads");
+    }
+
+    @Test
+    public void testFractionOfCpu() throws IOException {
+        Map<String, String> overrides = AutoSizing.create(AUTO, cgroup("25000 100000", "max")).overrides();
+        Assertions.assertEquals("1", overrides.get("server.workers"), "I/O threads");
+        Assertions.assertEquals("8", overrides.get("app.execution.platform-threads"), "blocking threads");
+    }
+
+    @Test
+    public void testMemoryLimitsBlockingThreads() throws IOException {
+        // an eighth of the memory limit for 1 MiB stacks: 64 MiB allows 8 threads, 16 MiB the minimum of 4
+        Map<String, String> overrides = AutoSizing.create(AUTO, cgroup("400000 100000", String.valueOf(64 * MIB)))
+                .overrides();
+        Assertions.assertEquals("8", overrides.get("app.execution.platform-threads"), "blocking threads, 64 MiB");
+
+        overrides = AutoSizing.create(AUTO, cgroup("400000 100000", String.valueOf(16 * MIB))).overrides();
+        Assertions.assertEquals("4", overrides.get("app.execution.platform-threads"), "blocking threads, 16 MiB");
+    }
+
+    @Test
+    public void testStaticMode() throws IOException {
+        Config config = Config.create(ConfigSources.create(Map.of("mode", AutoSizing.MODE_STATIC)));
+        AutoSizing sizing = AutoSizing.create(config, cgroup("25000 100000", "max"));
+        Assertions.assertFalse(sizing.enabled(), "enabled");
+        Assertions.assertTrue(sizing.overrides().isEmpty(), "overrides");
+    }
+
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("cgroup-", ".max");
+        file.toFile().deleteOnExit();
+        return Files.writeString(file, content);
+    }
+
+    private static Path cgroup(String cpuMax, String memoryMax) throws IOException {
+        Path directory = Files.createTempDirectory("cgroup-");
+        directory.toFile().deleteOnExit();
+        for (Path file : new Path[] {Files.writeString(directory.resolve("cpu.max"), cpuMax),
+                                     Files.writeString(directory.resolve("memory.max"), memoryMax)}) {
+            file.toFile().deleteOnExit();
+        }
+        return directory;
+    }
+}
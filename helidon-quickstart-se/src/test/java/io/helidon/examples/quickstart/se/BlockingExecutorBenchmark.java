@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Platform against virtual threads under blocking load: each operation starts {@code concurrency} tasks that block
+ * for {@code blockMillis}, as a synchronous outbound call would, and waits for all of them.
+ * The platform pool runs {@value #PLATFORM_THREADS} of them at a time; the virtual mode needs a JVM with virtual
+ * threads and fails the trial otherwise, rather than measuring the platform fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockingExecutorBenchmark {
+    static final int PLATFORM_THREADS = 32;
+
+    @Param({BlockingExecutor.MODE_PLATFORM, BlockingExecutor.MODE_VIRTUAL})
+    public String mode;
+
+    @Param({"100", "1000", "10000"})
+    public int concurrency;
+
+    @Param("10")
+    public long blockMillis;
+
+    private BlockingExecutor executor;
+
+    @Setup
+    public void createExecutor() {
+        // the queue holds every task, so none is rejected
+        Map<String, String> execution = Map.of("mode", mode,
+                                               "platform-threads", String.valueOf(PLATFORM_THREADS),
+                                               "queue-size", String.valueOf(concurrency));
+        executor = BlockingExecutor.create(Config.create(ConfigSources.create(execution)));
+        if (BlockingExecutor.MODE_VIRTUAL.equals(mode) && !executor.virtual()) {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM");
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public long blockingCalls() throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Integer>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int call = i;
+            calls.add(executor.supply(() -> block(call)).toCompletableFuture());
+        }
+        long sum = 0;
+        for (CompletableFuture<Integer> call : calls) {
+            sum += call.get();
+        }
+        return sum;
+    }
+
+    private int block(int call) {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return call;
+    }
+}
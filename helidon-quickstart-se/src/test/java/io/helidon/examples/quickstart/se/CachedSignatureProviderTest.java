@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.net.URI;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+import io.helidon.security.AuthenticationResponse;
+import io.helidon.security.EndpointConfig;
+import io.helidon.security.OutboundSecurityResponse;
+import io.helidon.security.Security;
+import io.helidon.security.SecurityContext;
+import io.helidon.security.SecurityEnvironment;
+import io.helidon.security.SecurityResponse;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Inbound {@link CachedSignatureProvider} against signatures of the stock {@code http-signatures} provider.
+ */
+public class CachedSignatureProviderTest {
+    private static final String SECRET = "badIdeaClearTextPassword!";
+    private static final String HOST = "localhost:8080";
+    private static final List<String> SIGNED = List.of("date", HmacSignatures.REQUEST_TARGET, "host");
+
+    private static Security client;
+    private static Security server;
+
+    @BeforeAll
+    public static void createSecurity() {
+        Config config = Config.create(ConfigSources.classpath("signatures-test.yaml"));
+        client = Security.create(config.get("client"));
+        server = Security.create(config.get("server"));
+    }
+
+    @Test
+    public void testStockSignatureVerifies() {
+        AuthenticationResponse response = authenticate("/greet/Joe", stockSigned("/greet/Joe"));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS, response.status(), "status");
+        Assertions.assertEquals("MP Service", response.service().get().principal().getName(), "service principal");
+    }
+
+    @Test
+    public void testTamperedSignatureRejected() {
+        Map<String, List<String>> headers = stockSigned("/greet/Joe");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS,
+                                authenticate("/greet/Joe", headers).status(),
+                                "status - cached");
+        // the signature of /greet/Joe is cached now, it must not be accepted for another signing string
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Jack", headers).status(),
+                                "status - different request target");
+
+        Map<String, List<String>> tampered = replace(headers, "host", "evil.example.com");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", tampered).status(),
+                                "status - different host");
+
+        String signature = header(headers, "signature");
+        tampered = replace(headers, "signature", signature.replace("signature=\"", "signature=\"A"));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", tampered).status(),
+                                "status - modified signature");
+    }
+
+    @Test
+    public void testMissingSignatureRejected() {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("host", List.of(HOST));
+        headers.put("date", List.of(HmacSignatures.date()));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", headers).status(),
+                                "status - not signed");
+
+        headers = signed("helidon-mp", List.of("date", "host"), HmacSignatures.date(), "/greet/Joe");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", headers).status(),
+                                "status - request target not signed");
+    }
+
+    @Test
+    public void testStaleDateRejected() {
+        String recent = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(30));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.SUCCESS,
+                                authenticate("/greet/Joe", signed("helidon-mp", SIGNED, recent, "/greet/Joe")).status(),
+                                "status - within the configured clock skew");
+
+        String stale = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(120));
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", signed("helidon-mp", SIGNED, stale, "/greet/Joe")).status(),
+                                "status - outside the configured clock skew");
+    }
+
+    @Test
+    public void testUnknownKeyRejected() {
+        Map<String, List<String>> headers = signed("unknown", SIGNED, HmacSignatures.date(), "/greet/Joe");
+        Assertions.assertEquals(SecurityResponse.SecurityStatus.FAILURE,
+                                authenticate("/greet/Joe", headers).status(),
+                                "status - unknown key");
+    }
+
+    @Test
+    public void testCacheHitNeverValidatesOtherSigningString() {
+        HmacSignatures signatures = HmacSignatures.create(SECRET);
+        String signature = signatures.sign("date: a");
+        Assertions.assertTrue(signatures.verify("date: a", signature), "cached signature");
+        Assertions.assertFalse(signatures.verify("date: b", signature), "other signing string");
+        Assertions.assertEquals(signature, HmacSignatures.create(SECRET).sign("date: a"), "uncached signature");
+    }
+
+    private static Map<String, List<String>> stockSigned(String path) {
+        SecurityContext context = client.createContext("test-client");
+        SecurityEnvironment env = SecurityEnvironment.builder()
+                .method("GET")
+                .path(path)
+                .targetUri(URI.create("http://" + HOST + path))
+                .headers(Map.of("host", List.of(HOST)))
+                .build();
+        OutboundSecurityResponse response = context.outboundClientBuilder()
+                .outboundEnvironment(env)
+                .outboundEndpointConfig(EndpointConfig.create())
+                .buildAndGet();
+        Map<String, List<String>> headers = new HashMap<>(env.headers());
+        headers.putAll(response.requestHeaders());
+        return headers;
+    }
+
+    private static Map<String, List<String>> signed(String keyId, List<String> signed, String date, String path) {
+        Map<String, String> values = Map.of("date", date,
+                                            "host", HOST,
+                                            HmacSignatures.REQUEST_TARGET, HmacSignatures.requestTarget("GET", path));
+        String signature = HmacSignatures.create(SECRET).sign(HmacSignatures.signingString(signed, values::get));
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("date", List.of(date));
+        headers.put("host", List.of(HOST));
+        headers.put("signature", List.of(HmacSignatures.signatureHeader(keyId, signed, signature)));
+        return headers;
+    }
+
+    private static AuthenticationResponse authenticate(String path, Map<String, List<String>> headers) {
+        SecurityContext context = server.createContext("test-server");
+        context.env(SecurityEnvironment.builder()
+                            .method("GET")
+                            .path(path)
+                            .targetUri(URI.create("http://" + HOST + path))
+                            .headers(headers)
+                            .build());
+        return context.atnClientBuilder().buildAndGet();
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        return headers.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(name))
+                .findFirst()
+                .map(entry -> entry.getValue().get(0))
+                .orElse(null);
+    }
+
+    private static Map<String, List<String>> replace(Map<String, List<String>> headers, String name, String value) {
+        Map<String, List<String>> replaced = new HashMap<>(headers);
+        replaced.keySet().removeIf(name::equalsIgnoreCase);
+        replaced.put(name, List.of(value));
+        return replaced;
+    }
+}
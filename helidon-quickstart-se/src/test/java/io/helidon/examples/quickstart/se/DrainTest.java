@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+import io.helidon.metrics.RegistryFactory;
+import io.helidon.webserver.Routing;
+import io.helidon.webserver.ServerConfiguration;
+import io.helidon.webserver.ServerResponse;
+import io.helidon.webserver.WebServer;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Draining of a {@link Drain} registered in front of a route that holds its responses until the test sends them;
+ * each test drains a drain of its own, on a server of its own.
+ */
+public class DrainTest {
+    private static final Config BUDGET = Config.create(ConfigSources.create(Map.of("budget-seconds", "1")));
+    private static final MetricRegistry VENDOR = RegistryFactory.getInstance().getRegistry(MetricRegistry.Type.VENDOR);
+
+    private final BlockingQueue<ServerResponse> held = new LinkedBlockingQueue<>();
+
+    @Test
+    public void testRejectWhileDraining() throws Exception {
+        Drain drain = Drain.create(BUDGET);
+        WebServer server = startServer(drain);
+        try {
+            long abandoned = VENDOR.counter("drain.abandoned").getCount();
+            long drains = VENDOR.timer("drain.duration").getCount();
+
+            CompletableFuture<Integer> inFlight = CompletableFuture.supplyAsync(() -> status(server));
+            ServerResponse response = awaitHeld();
+            Assertions.assertEquals(HealthCheckResponse.State.UP, drain.call().getState(), "ready before draining");
+
+            CompletableFuture<Void> draining = CompletableFuture.runAsync(drain::drain);
+            awaitDown(drain);
+            HttpURLConnection conn = get(server);
+            Assertions.assertEquals(503, conn.getResponseCode(), "rejected while draining");
+            Assertions.assertEquals("close", conn.getHeaderField("Connection"), "Connection header");
+
+            response.send("done");
+            draining.get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(200, (int) inFlight.get(5, TimeUnit.SECONDS), "in-flight request completed");
+            Assertions.assertEquals(abandoned, VENDOR.counter("drain.abandoned").getCount(), "abandoned requests");
+            Assertions.assertEquals(drains + 1, VENDOR.timer("drain.duration").getCount(), "drains timed");
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    @Test
+    public void testAbandonWhenBudgetRunsOut() throws Exception {
+        Drain drain = Drain.create(BUDGET);
+        WebServer server = startServer(drain);
+        try {
+            long abandoned = VENDOR.counter("drain.abandoned").getCount();
+            long drains = VENDOR.timer("drain.duration").getCount();
+
+            CompletableFuture.supplyAsync(() -> status(server));
+            ServerResponse response = awaitHeld();
+
+            // the held request outlives the budget of one second
+            drain.drain();
+            Assertions.assertEquals(HealthCheckResponse.State.DOWN, drain.call().getState(), "ready after draining");
+            Assertions.assertEquals(abandoned + 1, VENDOR.counter("drain.abandoned").getCount(), "abandoned requests");
+            Assertions.assertEquals(drains + 1, VENDOR.timer("drain.duration").getCount(), "drains timed");
+            response.send("done");
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    private WebServer startServer(Drain drain) throws Exception {
+        Routing routing = Routing.builder()
+                .register(drain)
+                .get("/held", (req, res) -> held.add(res))
+                .build();
+        return WebServer.create(ServerConfiguration.builder().port(0).build(), routing)
+                .start()
+                .toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static void stopServer(WebServer server) throws Exception {
+        server.shutdown()
+                .toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private ServerResponse awaitHeld() throws InterruptedException {
+        ServerResponse response = held.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(response, "request held");
+        return response;
+    }
+
+    private static void awaitDown(Drain drain) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (drain.call().getState() != HealthCheckResponse.State.DOWN) {
+            if (System.nanoTime() - deadline > 0) {
+                Assertions.fail("Drain did not start");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static int status(WebServer server) {
+        try {
+            return get(server).getResponseCode();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static HttpURLConnection get(WebServer server) throws IOException {
+        URL url = new URL("http://localhost:" + server.port() + "/held");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        return conn;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Framing overhead of an outbound reply: a greeting message written to bytes and read back, as a
+ * {@link GreetFrames} frame against the {@code {"message":...}} JSON object of the JSON protocol.
+ * The body sizes of both are printed once per trial; HTTP headers, the same for both, are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GreetFramesBenchmark {
+    private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
+    private static final JsonWriterFactory JSON_WRITER = Json.createWriterFactory(Collections.emptyMap());
+    private static final JsonReaderFactory JSON_READER = Json.createReaderFactory(Collections.emptyMap());
+
+    @Param({"Hello World!", "Ahoj Ji\u0159\u00ed, v\u00edtej zp\u00e1tky!"})
+    public String message;
+
+    @Setup
+    public void printSizes() {
+        System.out.println("Body bytes: frame " + GreetFrames.encode(message).length
+                                   + ", JSON " + writeJson(message).length);
+    }
+
+    @Benchmark
+    public String frames() {
+        return GreetFrames.decode(GreetFrames.encode(message)).get(0);
+    }
+
+    @Benchmark
+    public String json() {
+        try (JsonReader reader = JSON_READER.createReader(new ByteArrayInputStream(writeJson(message)),
+                                                          StandardCharsets.UTF_8)) {
+            return reader.readObject().getString("message");
+        }
+    }
+
+    private static byte[] writeJson(String message) {
+        JsonObject body = JSON.createObjectBuilder()
+                .add("message", message)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = JSON_WRITER.createWriter(out, StandardCharsets.UTF_8)) {
+            writer.writeObject(body);
+        }
+        return out.toByteArray();
+    }
+}
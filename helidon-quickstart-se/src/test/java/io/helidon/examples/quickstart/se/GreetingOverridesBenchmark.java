@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Locale lookups of {@link GreetingOverrides}: fallback chains resolved through the cache against computed for
+ * every request, and {@code Accept-Language} lookups alone against lookups while a writer replaces a locale
+ * greeting every millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GreetingOverridesBenchmark {
+    private static final int LOCALES = 500;
+
+    @Param({"de-AT,de;q=0.9,en-US;q=0.8,en;q=0.7", "fr-CH, fr;q=0.9, en;q=0.8, de;q=0.7, *;q=0.5"})
+    public String acceptLanguage;
+
+    private GreetingOverrides overrides;
+    private int written;
+
+    @Setup
+    public void createOverrides() {
+        overrides = new GreetingOverrides();
+        for (int i = 0; i < LOCALES; i++) {
+            overrides.putLocale("x" + i, "Greeting " + i);
+        }
+        overrides.putLocale("en", "Hello");
+    }
+
+    @Benchmark
+    public String[] chainCached() {
+        return GreetingOverrides.fallbackChain(acceptLanguage);
+    }
+
+    @Benchmark
+    public String[] chainUncached() {
+        return GreetingOverrides.computeFallbackChain(GreetingOverrides.chainKey(acceptLanguage));
+    }
+
+    @Benchmark
+    public GreetingTemplate lookup() {
+        return overrides.forAcceptLanguage(acceptLanguage);
+    }
+
+    @Benchmark
+    @Group("lookupWhileWriting")
+    @GroupThreads(4)
+    public GreetingTemplate lookupWhileWriting() {
+        return overrides.forAcceptLanguage(acceptLanguage);
+    }
+
+    @Benchmark
+    @Group("lookupWhileWriting")
+    @GroupThreads(1)
+    public void write() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(1);
+        overrides.putLocale("x" + (written++ % LOCALES), "Greeting");
+    }
+}
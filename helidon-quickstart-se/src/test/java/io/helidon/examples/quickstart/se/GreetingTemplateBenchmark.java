@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering a precompiled {@link GreetingTemplate} against the {@code String.format} call it replaced, for the
+ * plain greeting ({@code "%s %s!"}) and for a template with a header placeholder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GreetingTemplateBenchmark {
+    private static final GreetingTemplate PLAIN = GreetingTemplate.compile("Hello");
+    private static final GreetingTemplate TEMPLATE = GreetingTemplate.compile("Welcome back, {name} ({header:X-Client})!");
+    private static final Function<String, String> HEADERS = Map.of("X-Client", "curl")::get;
+
+    @Param({"Joe", "Jose Maria"})
+    public String name;
+
+    @Benchmark
+    public String formatPlain() {
+        return String.format("%s %s!", "Hello", name);
+    }
+
+    @Benchmark
+    public String renderPlain() {
+        return PLAIN.render(name, HEADERS);
+    }
+
+    @Benchmark
+    public String formatTemplate() {
+        return String.format("Welcome back, %s (%s)!", name, HEADERS.apply("X-Client"));
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        return TEMPLATE.render(name, HEADERS);
+    }
+}
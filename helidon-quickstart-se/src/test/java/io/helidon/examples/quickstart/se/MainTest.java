@@ -20,6 +20,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.json.Json;
@@ -99,10 +100,142 @@ public class MainTest {
         conn = getURLConnection("GET", "/health");
         Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2");
 
+        conn = getURLConnection("GET", "/health/ready");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2 - ready");
+
         conn = getURLConnection("GET", "/metrics");
         Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2");
     }
 
+    @Test
+    public void testBulkImport() throws Exception {
+        HttpURLConnection conn;
+
+        conn = getURLConnection("PUT", "/greet/greeting/bulk");
+        conn.setRequestProperty("Content-Type", "application/x-ndjson");
+        conn.setDoOutput(true);
+        OutputStream os = conn.getOutputStream();
+        os.write(("{\"name\" : \"Tom\", \"greeting\" : \"Ahoy\"}\n"
+                + "{\"locale\" : \"cs\", \"greeting\" : \"Ahoj\"}\n").getBytes());
+        os.close();
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response1");
+        JsonReader jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals(2, jsonReader.readObject().getInt("imported"), "imported count");
+
+        conn = getURLConnection("GET", "/greet/Tom");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2");
+        jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals("Ahoy Tom!", jsonReader.readObject().getString("message"),
+                "name override message");
+
+        conn = getURLConnection("GET", "/greet/Petr");
+        conn.setRequestProperty("Accept-Language", "cs;q=0.9");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response3");
+        jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals("Ahoj Petr!", jsonReader.readObject().getString("message"),
+                "locale override message");
+
+        conn = getURLConnection("PUT", "/greet/greeting/bulk");
+        conn.setRequestProperty("Content-Type", "application/x-ndjson");
+        conn.setDoOutput(true);
+        os = conn.getOutputStream();
+        os.write("{\"name\" : \"Tom\"}\n".getBytes());
+        os.close();
+        Assertions.assertEquals(400, conn.getResponseCode(), "HTTP response4 - missing greeting");
+    }
+
+    @Test
+    public void testLocaleGreeting() throws Exception {
+        HttpURLConnection conn;
+
+        conn = getURLConnection("PUT", "/greet/greeting");
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setDoOutput(true);
+        OutputStream os = conn.getOutputStream();
+        os.write("{\"locale\" : \"sk\", \"greeting\" : \"Ahojte\"}".getBytes());
+        os.close();
+        Assertions.assertEquals(204, conn.getResponseCode(), "HTTP response1");
+
+        conn = getURLConnection("GET", "/greet/Jana");
+        conn.setRequestProperty("Accept-Language", "fr;q=0.5, sk-SK");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2");
+        JsonReader jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals("Ahojte Jana!", jsonReader.readObject().getString("message"),
+                "locale fallback message");
+
+        conn = getURLConnection("GET", "/greet");
+        conn.setRequestProperty("Accept-Language", "SK-sk");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response3");
+        jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals("Ahojte World!", jsonReader.readObject().getString("message"),
+                "default locale message");
+
+        conn = getURLConnection("PUT", "/greet/greeting");
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setDoOutput(true);
+        os = conn.getOutputStream();
+        os.write("{\"locale\" : \" \", \"greeting\" : \"Ahojte\"}".getBytes());
+        os.close();
+        Assertions.assertEquals(400, conn.getResponseCode(), "HTTP response4 - invalid locale");
+    }
+
+    @Test
+    public void testGreetingTemplate() throws Exception {
+        HttpURLConnection conn;
+
+        conn = getURLConnection("PUT", "/greet/greeting/bulk");
+        conn.setRequestProperty("Content-Type", "application/x-ndjson");
+        conn.setDoOutput(true);
+        OutputStream os = conn.getOutputStream();
+        os.write("{\"name\" : \"Ann\", \"greeting\" : \"Welcome back, {name} ({header:X-Client})\"}\n".getBytes());
+        os.close();
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response1");
+
+        conn = getURLConnection("GET", "/greet/Ann");
+        conn.setRequestProperty("X-Client", "junit");
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response2");
+        JsonReader jsonReader = JSON.createReader(conn.getInputStream());
+        Assertions.assertEquals("Welcome back, Ann (junit)", jsonReader.readObject().getString("message"),
+                "template message");
+    }
+
+    @Test
+    public void testFrames() throws Exception {
+        HttpURLConnection conn;
+
+        conn = getURLConnection("POST", "/greet/frames");
+        conn.setRequestProperty("Content-Type", GreetFrames.MEDIA_TYPE);
+        conn.setRequestProperty("Accept", GreetFrames.MEDIA_TYPE);
+        conn.setDoOutput(true);
+        OutputStream os = conn.getOutputStream();
+        os.write(GreetFrames.encode("Joe", "Jose"));
+        os.close();
+        Assertions.assertEquals(200, conn.getResponseCode(), "HTTP response1");
+        List<String> messages = GreetFrames.decode(conn.getInputStream().readAllBytes());
+        Assertions.assertEquals(2, messages.size(), "frame count");
+        Assertions.assertTrue(messages.get(0).endsWith(" Joe!"), "Joe message");
+        Assertions.assertTrue(messages.get(1).endsWith(" Jose!"), "Jose message");
+
+        conn = getURLConnection("POST", "/greet/frames");
+        conn.setRequestProperty("Content-Type", GreetFrames.MEDIA_TYPE);
+        conn.setDoOutput(true);
+        os = conn.getOutputStream();
+        os.write(new byte[] {5, 'J', 'o'});
+        os.close();
+        Assertions.assertEquals(400, conn.getResponseCode(), "HTTP response2 - incomplete frame");
+    }
+
+    @Test
+    public void testRouteTags() {
+        Assertions.assertEquals("GET /greet", JvmTelemetry.route("GET", "/greet/"), "default route");
+        Assertions.assertEquals("GET /greet/outbound", JvmTelemetry.route("GET", "/greet/outbound"), "literal route");
+        Assertions.assertEquals("GET /greet/{name}", JvmTelemetry.route("GET", "/greet/Joe"), "template route");
+        Assertions.assertEquals("GET /metrics/{+}", JvmTelemetry.route("GET", "/metrics/vendor/jvm.gc.pause"),
+                                "prefix route");
+        Assertions.assertEquals("other", JvmTelemetry.route("GET", "/greet/Joe/x"), "unregistered path");
+        Assertions.assertEquals("other", JvmTelemetry.route("DELETE", "/greet"), "unregistered method");
+    }
+
     private HttpURLConnection getURLConnection(String method, String path) throws Exception {
         URL url = new URL("http://localhost:" + webServer.port() + path);
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2019 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.helidon.examples.quickstart.se;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+
+import io.helidon.config.Config;
+import io.helidon.config.ConfigSources;
+import io.helidon.metrics.RegistryFactory;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load balancing and hedging of {@link OutboundPeers}; the requests are completed by the tests, not by real peers.
+ */
+public class OutboundPeersTest {
+    private static final String A = "a.example";
+    private static final String B = "b.example";
+    private static final String C = "c.example";
+    private static final String DEFAULT_PEER = "http://localhost:8081/greet";
+    private static final ToIntFunction<String> SIZE = GreetFrames::utf8Length;
+
+    private static Config config;
+    private static Client client;
+
+    @BeforeAll
+    public static void createClient() {
+        config = Config.create(ConfigSources.classpath("outbound-test.yaml"));
+        client = ClientBuilder.newClient();
+    }
+
+    @AfterAll
+    public static void closeClient() {
+        client.close();
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        OutboundPeers peers = OutboundPeers.create(config.get("least-outstanding"), client, DEFAULT_PEER);
+        List<String> called = new ArrayList<>();
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        Function<WebTarget, CompletionStage<String>> held = target -> {
+            called.add(target.getUri().getHost());
+            CompletableFuture<String> response = new CompletableFuture<>();
+            pending.add(response);
+            return response;
+        };
+
+        for (int i = 0; i < 4; i++) {
+            peers.call(held, SIZE);
+        }
+        // ties go to the first peer in the configured order
+        Assertions.assertEquals(List.of(A, B, C, A), called, "peers called");
+        Assertions.assertEquals(4, peers.outstanding(), "outstanding");
+
+        pending.get(1).complete("done");
+        peers.call(held, SIZE);
+        Assertions.assertEquals(B, called.get(4), "peer called once its request completed");
+
+        pending.forEach(response -> response.complete("done"));
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    @Test
+    public void testPowerOfTwoChoices() {
+        OutboundPeers peers = OutboundPeers.create(config.get("p2c"), client, DEFAULT_PEER);
+        CompletableFuture<String> busy = new CompletableFuture<>();
+        for (int i = 0; i < 1000 && peers.outstanding() == 0; i++) {
+            peers.call(target -> A.equals(target.getUri().getHost())
+                    ? busy
+                    : CompletableFuture.completedFuture("done"), SIZE);
+        }
+        Assertions.assertEquals(1, peers.outstanding(), "request held by the busy peer");
+
+        // each choice includes an idle peer, so the busy one is never chosen
+        Map<String, Integer> called = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            peers.call(target -> {
+                called.merge(target.getUri().getHost(), 1, Integer::sum);
+                return CompletableFuture.completedFuture("done");
+            }, SIZE);
+        }
+        Assertions.assertNull(called.get(A), "busy peer called");
+        Assertions.assertNotNull(called.get(B), "first idle peer called");
+        Assertions.assertNotNull(called.get(C), "second idle peer called");
+
+        busy.complete("done");
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    @Test
+    public void testHedgeFiresAndWins() throws Exception {
+        OutboundPeers peers = OutboundPeers.create(config.get("hedged"), client, DEFAULT_PEER);
+        long fired = count("outbound.hedge.fired");
+        long wins = count("outbound.hedge.wins");
+        List<String> called = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        String message = peers.call(target -> {
+            called.add(target.getUri().getHost());
+            return (called.size() == 1) ? slow : CompletableFuture.completedFuture("backup");
+        }, SIZE).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("backup", message, "response");
+        Assertions.assertEquals(2, called.size(), "requests");
+        Assertions.assertNotEquals(called.get(0), called.get(1), "backup request sent to the other peer");
+        Assertions.assertEquals(fired + 1, count("outbound.hedge.fired"), "hedges fired");
+        Assertions.assertEquals(wins + 1, count("outbound.hedge.wins"), "hedge wins");
+        Assertions.assertEquals(1, peers.outstanding(), "slow request is still outstanding");
+
+        slow.complete("primary");
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    @Test
+    public void testPrimaryWinsWithoutHedge() throws Exception {
+        OutboundPeers peers = OutboundPeers.create(config.get("hedged"), client, DEFAULT_PEER);
+        long fired = count("outbound.hedge.fired");
+
+        String message = peers.call(target -> CompletableFuture.completedFuture("primary"), SIZE)
+                .toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+        // longer than the hedge delay, the timer must have been cancelled
+        Thread.sleep(50);
+
+        Assertions.assertEquals("primary", message, "response");
+        Assertions.assertEquals(fired, count("outbound.hedge.fired"), "hedges fired");
+    }
+
+    @Test
+    public void testFailedRequestRetried() throws Exception {
+        OutboundPeers peers = OutboundPeers.create(config.get("hedged"), client, DEFAULT_PEER);
+        List<String> called = new CopyOnWriteArrayList<>();
+
+        String message = peers.call(target -> {
+            called.add(target.getUri().getHost());
+            return (called.size() == 1)
+                    ? CompletableFuture.<String>failedFuture(new IllegalStateException("refused"))
+                    : CompletableFuture.completedFuture("retry");
+        }, SIZE).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("retry", message, "response");
+        Assertions.assertEquals(2, called.size(), "requests");
+        Assertions.assertNotEquals(called.get(0), called.get(1), "retry sent to the other peer");
+
+        // when both fail, the call fails once, and only after the last request completed
+        CompletableFuture<String> backup = new CompletableFuture<>();
+        List<CompletableFuture<String>> responses = List.of(
+                CompletableFuture.failedFuture(new IllegalStateException("refused")),
+                backup);
+        List<String> failing = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> result = peers.call(target -> {
+            failing.add(target.getUri().getHost());
+            return responses.get(failing.size() - 1);
+        }, SIZE).toCompletableFuture();
+        Assertions.assertFalse(result.isDone(), "failed while the retry is running");
+
+        backup.completeExceptionally(new IllegalStateException("refused"));
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                                                       () -> result.get(5, TimeUnit.SECONDS),
+                                                       "both requests failed");
+        Assertions.assertEquals("refused", e.getCause().getMessage(), "cause");
+        Assertions.assertEquals(0, peers.outstanding(), "outstanding when done");
+    }
+
+    private static long count(String name) {
+        return RegistryFactory.getInstance()
+                .getRegistry(MetricRegistry.Type.APPLICATION)
+                .counter(name)
+                .getCount();
+    }
+}